@@ -0,0 +1,48 @@
+package org.elasticsearch.benchmark.analysis;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.el.GreekLowerCaseFilter;
+import org.apache.lucene.analysis.el.GreekStemFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.elasticsearch.index.analysis.SkroutzGreekStemTokenFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds the token stream chain of {@link TokenFilterBenchmark}, as an
+ * analyzer does once per thread and field, without analyzing anything.
+ * Scores are ns per chain and, with {@code -prof gc},
+ * {@code gc.alloc.rate.norm} is bytes allocated per chain.
+ * <p>
+ * The same chain ending in Lucene's {@link GreekStemFilter} is the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterCreationBenchmark {
+
+  @Benchmark
+  public TokenStream skroutzChain() {
+    final Tokenizer tokenizer = new StandardTokenizer();
+    return new SkroutzGreekStemTokenFilter(new GreekLowerCaseFilter(tokenizer));
+  }
+
+  @Benchmark
+  public TokenStream luceneChain() {
+    final Tokenizer tokenizer = new StandardTokenizer();
+    return new GreekStemFilter(new GreekLowerCaseFilter(tokenizer));
+  }
+}
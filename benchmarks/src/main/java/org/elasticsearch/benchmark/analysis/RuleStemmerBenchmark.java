@@ -0,0 +1,84 @@
+package org.elasticsearch.benchmark.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.index.analysis.SkroutzGreekRuleStemmer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Stems the words of stemming_samples.txt with the bundled rule file followed
+ * by {@code extraRules} rules on suffixes that none of the words end with, so
+ * the score shows what a rule that cannot match costs per token. The rule file
+ * stemmer skips such rules through its automaton, so the score should barely
+ * move with {@code extraRules}; compare it to {@code StemmerBenchmark.skroutzStem}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RuleStemmerBenchmark {
+  @Param({ "0", "100", "1000" })
+  public int extraRules;
+
+  private SkroutzGreekRuleStemmer ruleStemmer;
+
+  private char[][] words;
+  /** a term buffer reused across tokens, the way CharTermAttribute is */
+  private final char[] buffer = new char[64];
+  private int next;
+
+  @Setup
+  public void setup() throws IOException {
+    words = StemmingSamples.words();
+
+    final StringBuilder file = new StringBuilder();
+    try (InputStream in = SkroutzGreekRuleStemmer.class.getResourceAsStream(SkroutzGreekRuleStemmer.BUNDLED_RULES);
+         BufferedReader lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = lines.readLine()) != null)
+        file.append(line).append('\n');
+    }
+    for (int i = 0; i < extraRules; i++) {
+      file.append("rule extra").append(i).append('\n')
+          .append("  if length > 3 and suffix ").append(suffix(i)).append(": cut 1\n");
+    }
+    ruleStemmer = SkroutzGreekRuleStemmer.compile(new StringReader(file.toString()));
+  }
+
+  /** a distinct suffix per rule, which no greek word ends with */
+  private static String suffix(int i) {
+    final StringBuilder suffix = new StringBuilder("ψξ");
+    do {
+      suffix.append((char) ('α' + i % 24));
+      i /= 24;
+    } while (i > 0);
+    return suffix.toString();
+  }
+
+  @Benchmark
+  public int ruleStem() {
+    final char[] word = words[next];
+    if (++next == words.length)
+      next = 0;
+    System.arraycopy(word, 0, buffer, 0, word.length);
+    return ruleStemmer.stem(buffer, word.length);
+  }
+}
@@ -0,0 +1,75 @@
+package org.elasticsearch.benchmark.analysis;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.el.GreekStemmer;
+import org.elasticsearch.index.analysis.SkroutzGreekRuleStemmer;
+import org.elasticsearch.index.analysis.SkroutzGreekStemmer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Stems the words of stemming_samples.txt one per operation, so the score is
+ * ns/token and, with {@code -prof gc}, {@code gc.alloc.rate.norm} is bytes
+ * allocated per token.
+ * <p>
+ * Lucene's stock {@link GreekStemmer} runs over the same words as a baseline,
+ * and the stemmer of the bundled rule file against the built-in one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StemmerBenchmark {
+  private final SkroutzGreekStemmer skroutzStemmer = SkroutzGreekStemmer.INSTANCE;
+  private SkroutzGreekStemmer ruleStemmer;
+  private final GreekStemmer luceneStemmer = new GreekStemmer();
+
+  private char[][] words;
+  /** a term buffer reused across tokens, the way CharTermAttribute is */
+  private final char[] buffer = new char[64];
+  private int next;
+
+  @Setup
+  public void setup() throws IOException {
+    words = StemmingSamples.words();
+    ruleStemmer = SkroutzGreekRuleStemmer.bundled();
+  }
+
+  @Benchmark
+  public int skroutzStem() {
+    final char[] word = nextWord();
+    return skroutzStemmer.stem(buffer, word.length);
+  }
+
+  @Benchmark
+  public int ruleStem() {
+    final char[] word = nextWord();
+    return ruleStemmer.stem(buffer, word.length);
+  }
+
+  @Benchmark
+  public int luceneStem() {
+    final char[] word = nextWord();
+    return luceneStemmer.stem(buffer, word.length);
+  }
+
+  private char[] nextWord() {
+    final char[] word = words[next];
+    if (++next == words.length)
+      next = 0;
+    System.arraycopy(word, 0, buffer, 0, word.length);
+    return word;
+  }
+}
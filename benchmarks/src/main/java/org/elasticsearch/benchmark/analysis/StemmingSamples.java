@@ -0,0 +1,28 @@
+package org.elasticsearch.benchmark.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.lucene.analysis.WordlistLoader;
+
+/**
+ * The words of stemming_samples.txt, the golden file the stemmer is tested
+ * against, loaded from the classpath.
+ */
+final class StemmingSamples {
+  private StemmingSamples() { }
+
+  static char[][] words() throws IOException {
+    final List<String> lines;
+    try (InputStream in = StemmingSamples.class.getResourceAsStream("/stemming_samples.txt")) {
+      lines = WordlistLoader.getLines(in, StandardCharsets.UTF_8);
+    }
+
+    char[][] words = new char[lines.size()][];
+    for (int i = 0; i < words.length; i++)
+      words[i] = lines.get(i).split(",")[0].toCharArray();
+    return words;
+  }
+}
@@ -0,0 +1,112 @@
+package org.elasticsearch.benchmark.analysis;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.el.GreekLowerCaseFilter;
+import org.apache.lucene.analysis.el.GreekStemFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.elasticsearch.index.analysis.SkroutzGreekStemTokenFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Analyzes a document of {@link #TOKENS} sample words through a realistic
+ * chain: standard tokenizer, {@link GreekLowerCaseFilter} and the stem filter.
+ * Scores are ns/token and, with {@code -prof gc}, {@code gc.alloc.rate.norm}
+ * is bytes allocated per token.
+ * <p>
+ * The same chain ending in Lucene's {@link GreekStemFilter} is the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenFilterBenchmark {
+  static final int TOKENS = 1000;
+
+  private Analyzer skroutzAnalyzer;
+  private Analyzer luceneAnalyzer;
+  private String document;
+
+  @Setup
+  public void setup() throws IOException {
+    final char[][] words = StemmingSamples.words();
+    final Random random = new Random(0);
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < TOKENS; i++) {
+      // upper case the first letter of some words, so lowercasing has work to do
+      final char[] word = words[random.nextInt(words.length)];
+      if (random.nextInt(4) == 0)
+        text.append(Character.toUpperCase(word[0])).append(word, 1, word.length - 1);
+      else
+        text.append(word);
+      text.append(' ');
+    }
+    document = text.toString();
+
+    skroutzAnalyzer = new Analyzer() {
+      @Override
+      protected TokenStreamComponents createComponents(String fieldName) {
+        final StandardTokenizer tokenizer = new StandardTokenizer();
+        return new TokenStreamComponents(tokenizer,
+            new SkroutzGreekStemTokenFilter(new GreekLowerCaseFilter(tokenizer)));
+      }
+    };
+    luceneAnalyzer = new Analyzer() {
+      @Override
+      protected TokenStreamComponents createComponents(String fieldName) {
+        final StandardTokenizer tokenizer = new StandardTokenizer();
+        return new TokenStreamComponents(tokenizer,
+            new GreekStemFilter(new GreekLowerCaseFilter(tokenizer)));
+      }
+    };
+
+    if (analyze(skroutzAnalyzer) != TOKENS)
+      throw new IllegalStateException("expected " + TOKENS + " tokens");
+  }
+
+  @TearDown
+  public void tearDown() {
+    skroutzAnalyzer.close();
+    luceneAnalyzer.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TOKENS)
+  public int skroutzChain() throws IOException {
+    return analyze(skroutzAnalyzer);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(TOKENS)
+  public int luceneChain() throws IOException {
+    return analyze(luceneAnalyzer);
+  }
+
+  private int analyze(Analyzer analyzer) throws IOException {
+    int tokens = 0;
+    try (TokenStream stream = analyzer.tokenStream("field", document)) {
+      stream.reset();
+      while (stream.incrementToken())
+        tokens++;
+      stream.end();
+    }
+    return tokens;
+  }
+}
@@ -0,0 +1,234 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Up to 32 sets of words, packed into a single minimal perfect hash table
+ * that answers "is this token one of the words of set N" with one pass over
+ * the token and at most one comparison.
+ * <p>
+ * Sets are registered through {@link Builder#add(String...)}. Every distinct
+ * word of all the sets is stored once, in a single {@code char[]} arena, with
+ * the bit set of the sets it belongs to. The table is built with hash and
+ * displace: words are hashed into buckets, and every bucket gets a seed that
+ * sends its words to free slots, so that each of the {@code n} words owns one
+ * of {@code n} slots.
+ * <p>
+ * Every word is hashed to 64 bits, by two independent 32 bit hashes computed
+ * in the same pass. The bucket only depends on the first one, the slot on
+ * both, so that words with the same {@link String#hashCode()}, such as "Aa"
+ * and "BB", still get different slots.
+ */
+final class ExceptionSets {
+  /** the words, back to back */
+  private final char[] arena;
+  /** the word of slot {@code i} is {@code arena[offsets[i]..offsets[i + 1])} */
+  private final int[] offsets;
+  /** the sets that the word of each slot belongs to */
+  private final int[] sets;
+  /** the seed of every bucket */
+  private final int[] seeds;
+  /** the most seeds tried for a bucket before giving up */
+  static final int MAX_SEED = 1 << 20;
+  private final int maxLength;
+
+  private ExceptionSets(char[] arena, int[] offsets, int[] sets, int[] seeds, int maxLength) {
+    this.arena = arena;
+    this.offsets = offsets;
+    this.sets = sets;
+    this.seeds = seeds;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Returns whether {@code s[0..len)} is one of the words of {@code set}.
+   */
+  boolean contains(int set, char s[], int len) {
+    if (len > maxLength)
+      return false;
+
+    final long hash = hash(s, len);
+    final int slot = slot(hash, seeds[bucket(hash, seeds.length)], sets.length);
+    if ((sets[slot] & set) == 0)
+      return false;
+
+    final int offset = offsets[slot];
+    if (offsets[slot + 1] - offset != len)
+      return false;
+    for (int i = 0; i < len; i++)
+      if (arena[offset + i] != s[i])
+        return false;
+    return true;
+  }
+
+  int size() {
+    return sets.length;
+  }
+
+  /**
+   * The 31 polynomial hash of {@link String#hashCode()} in the high 32 bits,
+   * and an FNV-1a hash in the low 32 bits.
+   */
+  private static long hash(char s[], int len) {
+    int poly = 0;
+    int fnv = 0x811c9dc5;
+    for (int i = 0; i < len; i++) {
+      poly = 31 * poly + s[i];
+      fnv = (fnv ^ s[i]) * 0x01000193;
+    }
+    return (long) poly << 32 | fnv & 0xFFFFFFFFL;
+  }
+
+  private static int bucket(long hash, int buckets) {
+    return reduce(mix((int) (hash >>> 32)), buckets);
+  }
+
+  private static int slot(long hash, int seed, int slots) {
+    return reduce((int) (mix64(hash ^ seed * 0x9E3779B97F4A7C15L) >>> 32), slots);
+  }
+
+  /** the murmur3 finalizer */
+  private static int mix(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  /** the murmur3 64 bit finalizer */
+  private static long mix64(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /** maps {@code h} to {@code [0, n)} without a division */
+  private static int reduce(int h, int n) {
+    return (int) (((h & 0xFFFFFFFFL) * n) >>> 32);
+  }
+
+  /**
+   * Collects word sets and compiles them into an {@link ExceptionSets}.
+   */
+  static final class Builder {
+    private final Map<String, Integer> words = new LinkedHashMap<>();
+    private int count;
+
+    /**
+     * Registers a set of words and returns its bit, to pass to
+     * {@link ExceptionSets#contains(int, char[], int)}.
+     */
+    int add(String... words) {
+      if (count == Integer.SIZE)
+        throw new IllegalStateException("at most " + Integer.SIZE + " sets");
+      final int set = 1 << count++;
+      for (String word : words)
+        this.words.merge(word, set, (a, b) -> a | b);
+      return set;
+    }
+
+    ExceptionSets build() {
+      final String[] keys = words.keySet().toArray(new String[0]);
+      final int n = Math.max(1, keys.length);
+      final long[] hashes = new long[keys.length];
+      final List<List<Integer>> buckets = new ArrayList<>();
+      final int[] seeds = new int[Math.max(1, n / 2)];
+      for (int i = 0; i < seeds.length; i++)
+        buckets.add(new ArrayList<>());
+      for (int i = 0; i < keys.length; i++) {
+        hashes[i] = hash(keys[i].toCharArray(), keys[i].length());
+        buckets.get(bucket(hashes[i], seeds.length)).add(i);
+      }
+      checkDistinct(keys, hashes);
+
+      // the largest buckets first, while most slots are free
+      final Integer[] order = new Integer[seeds.length];
+      for (int i = 0; i < order.length; i++)
+        order[i] = i;
+      Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+      final int[] owner = new int[n];
+      Arrays.fill(owner, -1);
+      final int[] taken = new int[n];
+      for (int bucket : order) {
+        final List<Integer> members = buckets.get(bucket);
+        if (members.isEmpty())
+          break;
+        for (int seed = 1; ; seed++) {
+          if (place(members, hashes, seed, owner, taken)) {
+            seeds[bucket] = seed;
+            break;
+          }
+          if (seed == MAX_SEED)
+            throw new IllegalStateException("no perfect hash for the exception sets: no seed up to "
+                + MAX_SEED + " places the " + members.size() + " words of a bucket");
+        }
+      }
+
+      int total = 0, maxLength = 0;
+      for (String key : keys) {
+        total += key.length();
+        maxLength = Math.max(maxLength, key.length());
+      }
+      final char[] arena = new char[total];
+      final int[] offsets = new int[n + 1];
+      final int[] sets = new int[n];
+      int offset = 0;
+      for (int slot = 0; slot < n; slot++) {
+        offsets[slot] = offset;
+        if (owner[slot] < 0)
+          continue;
+        final String key = keys[owner[slot]];
+        key.getChars(0, key.length(), arena, offset);
+        offset += key.length();
+        sets[slot] = words.get(key);
+      }
+      offsets[n] = offset;
+      return new ExceptionSets(arena, offsets, sets, seeds, maxLength);
+    }
+
+    /**
+     * Fails fast on two words with the same 64 bit hash, which no seed can
+     * send to different slots.
+     */
+    private static void checkDistinct(String[] keys, long[] hashes) {
+      final Map<Long, String> seen = new HashMap<>();
+      for (int i = 0; i < keys.length; i++) {
+        final String other = seen.put(hashes[i], keys[i]);
+        if (other != null)
+          throw new IllegalStateException("no perfect hash for the exception sets: ["
+              + other + "] and [" + keys[i] + "] have the same hash");
+      }
+    }
+
+    /**
+     * Places the words of a bucket with {@code seed}, if they all land on
+     * distinct free slots.
+     */
+    private static boolean place(List<Integer> members, long[] hashes, int seed, int[] owner, int[] taken) {
+      final int n = owner.length;
+      int placed = 0;
+      for (int member : members) {
+        final int slot = slot(hashes[member], seed, n);
+        if (owner[slot] >= 0) {
+          for (int i = 0; i < placed; i++)
+            owner[taken[i]] = -1;
+          return false;
+        }
+        owner[slot] = member;
+        taken[placed++] = slot;
+      }
+      return true;
+    }
+  }
+}
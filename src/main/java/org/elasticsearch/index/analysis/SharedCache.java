@@ -0,0 +1,76 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A node-wide cache of what token filter factories load from their settings,
+ * so that the indices configured alike share a single copy.
+ * <p>
+ * The cache only holds its values weakly: an entry goes away once the last
+ * factory that uses it, and so the last index, is closed. Every entry also
+ * records the version of what it was loaded from, such as the identity of a
+ * file; asking for another version loads a new value that replaces the entry,
+ * while the indices that hold the old value keep it until they are closed.
+ */
+final class SharedCache<K, V> {
+  /**
+   * Loads the value of a key.
+   */
+  interface Loader<K, V> {
+    V load(K key) throws IOException;
+  }
+
+  private final Map<K, Entry<K, V>> entries = new HashMap<>();
+  private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+
+  /**
+   * Returns the value of {@code key} at {@code version}, loading it if it is
+   * not cached, or was cached at another version.
+   */
+  synchronized V get(K key, Object version, Loader<K, V> loader) throws IOException {
+    expunge();
+    final Entry<K, V> entry = entries.get(key);
+    if (entry != null && Objects.equals(entry.version, version)) {
+      final V value = entry.get();
+      if (value != null)
+        return value;
+    }
+
+    final V value = loader.load(key);
+    entries.put(key, new Entry<>(key, version, value, queue));
+    return value;
+  }
+
+  /**
+   * Returns the number of values still in use.
+   */
+  synchronized int size() {
+    expunge();
+    return entries.size();
+  }
+
+  /** drops the entries whose values were garbage collected */
+  private void expunge() {
+    for (Reference<? extends V> reference; (reference = queue.poll()) != null; ) {
+      final Entry<?, ?> entry = (Entry<?, ?>) reference;
+      entries.remove(entry.key, entry);
+    }
+  }
+
+  private static final class Entry<K, V> extends WeakReference<V> {
+    final K key;
+    final Object version;
+
+    Entry(K key, Object version, V value, ReferenceQueue<V> queue) {
+      super(value, queue);
+      this.key = key;
+      this.version = version;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package org.elasticsearch.index.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.el.GreekLowerCaseFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+
+/**
+ * The standard tokenizer followed by a {@link SkroutzGreekStemTokenFilter} with
+ * {@link SkroutzGreekStemTokenFilter#FOLD},
+ * which lowercases and stems in a single pass; the same as a custom analyzer of
+ * the standard tokenizer and the {@code skroutz_greek_fold_stem} filter.
+ * <p>
+ * Query terms that are not analyzed, such as prefixes and wildcards, are only
+ * casefolded.
+ */
+public class SkroutzGreekAnalyzer extends Analyzer {
+	private final StemCache cache;
+	private final StemmerMetrics metrics;
+
+	/**
+	 * @param cache   the node-wide stem cache; may be null
+	 * @param metrics the node-wide stemming metrics; may be null
+	 */
+	public SkroutzGreekAnalyzer(StemCache cache, StemmerMetrics metrics) {
+		this.cache = cache;
+		this.metrics = metrics;
+	}
+
+	@Override
+	protected TokenStreamComponents createComponents(String fieldName) {
+		final Tokenizer source = new StandardTokenizer();
+		return new TokenStreamComponents(source,
+				new SkroutzGreekStemTokenFilter(source, null, null, cache, metrics, 0, SkroutzGreekStemTokenFilter.FOLD));
+	}
+
+	@Override
+	protected TokenStream normalize(String fieldName, TokenStream in) {
+		return new GreekLowerCaseFilter(in);
+	}
+}
@@ -0,0 +1,50 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.TokenStream;
+
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.assistedinject.Assisted;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+
+/**
+ * Creates {@link SkroutzGreekStemTokenFilter}s that casefold the term before
+ * stemming it, with {@link SkroutzGreekStemTokenFilter#FOLD}; takes the same
+ * settings as {@link SkroutzGreekStemmerTokenFilterFactory}.
+ */
+public class SkroutzGreekFoldStemTokenFilterFactory extends
+		SkroutzGreekStemmerTokenFilterFactory {
+
+	@Inject
+	public SkroutzGreekFoldStemTokenFilterFactory(IndexSettings indexSettings,
+												  Environment env, @Assisted String name,
+												  @Assisted Settings settings) throws IOException {
+		this(indexSettings, env, name, settings, null, null);
+	}
+
+	/**
+	 * @param cache   the node-wide stem cache, or null if it is disabled
+	 * @param metrics the node-wide stemming metrics, or null if they are disabled
+	 */
+	public SkroutzGreekFoldStemTokenFilterFactory(IndexSettings indexSettings,
+												  Environment env, String name,
+												  Settings settings, StemCache cache,
+												  StemmerMetrics metrics) throws IOException {
+		super(indexSettings, env, name, settings, cache, metrics);
+	}
+
+	@Override
+	public TokenStream create(TokenStream tokenStream) {
+		return new SkroutzGreekStemTokenFilter(tokenStream, exceptions, dictionary, cache, metrics, memoSize,
+				flags | SkroutzGreekStemTokenFilter.FOLD, stemmer);
+	}
+
+	@Override
+	public TokenStream normalize(TokenStream tokenStream) {
+		return new SkroutzGreekStemTokenFilter(tokenStream, exceptions, dictionary, cache, metrics, 0,
+				(flags & ~SkroutzGreekStemTokenFilter.PRESERVE_ORIGINAL) | SkroutzGreekStemTokenFilter.FOLD, stemmer);
+	}
+}
@@ -0,0 +1,79 @@
+package org.elasticsearch.index.analysis;
+
+/**
+ * Lowercases Greek terms, strips tonos and dialytika and folds final sigma in
+ * place, exactly like {@link org.apache.lucene.analysis.el.GreekLowerCaseFilter},
+ * for {@link SkroutzGreekStemTokenFilter#FOLD} and the stemming APIs.
+ */
+public final class SkroutzGreekFolding {
+
+	private SkroutzGreekFolding() {
+	}
+
+	/**
+	 * Casefolds {@code buffer[0..length)} in place, exactly like
+	 * {@link org.apache.lucene.analysis.el.GreekLowerCaseFilter}.
+	 */
+	public static void fold(char[] buffer, int length) {
+		for (int i = 0; i < length;) {
+			final char c = buffer[i];
+			if (c < 0x80) {
+				if (c >= 'A' && c <= 'Z')
+					buffer[i] = (char) (c + ('a' - 'A'));
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				i += Character.toChars(lowerCase(Character.codePointAt(buffer, i, length)), buffer, i);
+			} else {
+				buffer[i++] = (char) lowerCase(c);
+			}
+		}
+	}
+
+	private static int lowerCase(int codepoint) {
+		switch (codepoint) {
+			case 'ς': // small final sigma
+				return 'σ'; // small sigma
+
+			case 'Ά': // capital alpha with tonos
+			case 'ά': // small alpha with tonos
+				return 'α'; // small alpha
+
+			case 'Έ': // capital epsilon with tonos
+			case 'έ': // small epsilon with tonos
+				return 'ε'; // small epsilon
+
+			case 'Ή': // capital eta with tonos
+			case 'ή': // small eta with tonos
+				return 'η'; // small eta
+
+			case 'Ί': // capital iota with tonos
+			case 'Ϊ': // capital iota with dialytika
+			case 'ί': // small iota with tonos
+			case 'ϊ': // small iota with dialytika
+			case 'ΐ': // small iota with dialytika and tonos
+				return 'ι'; // small iota
+
+			case 'Ύ': // capital upsilon with tonos
+			case 'Ϋ': // capital upsilon with dialytika
+			case 'ύ': // small upsilon with tonos
+			case 'ϋ': // small upsilon with dialytika
+			case 'ΰ': // small upsilon with dialytika and tonos
+				return 'υ'; // small upsilon
+
+			case 'Ό': // capital omicron with tonos
+			case 'ό': // small omicron with tonos
+				return 'ο'; // small omicron
+
+			case 'Ώ': // capital omega with tonos
+			case 'ώ': // small omega with tonos
+				return 'ω'; // small omega
+
+			// kept by GreekLowerCaseFilter for backwards compatibility
+			case '\u03A2': // reserved
+				return 'ς'; // small final sigma
+
+			default:
+				return Character.toLowerCase(codepoint);
+		}
+	}
+}
@@ -0,0 +1,587 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.CharArraySet;
+
+/**
+ * A {@link SkroutzGreekStemmer} whose rules are read from a rule file instead
+ * of being compiled in, so that they can be tuned per index without a new
+ * plugin release. The format is described in {@code skroutz_greek_rules.txt},
+ * the bundled rule file, which gives the same stems as the built-in rules.
+ * <p>
+ * The rules are compiled once into flat tables: every case of every rule is a
+ * fixed-size row of ints, all suffixes are tested through a single
+ * {@link SuffixAutomaton} like the built-in rules do, and word lists are
+ * {@link CharArraySet}s. Stemming walks these tables and allocates nothing.
+ * <p>
+ * Like the built-in rules, every automaton node carries the rules that a word
+ * ending at it can trigger: a rule whose first cases all need a suffix, or
+ * one of a list of words, is skipped for the words that end with none of
+ * them, without looking at its cases.
+ */
+public final class SkroutzGreekRuleStemmer extends SkroutzGreekStemmer {
+  /** The rule file in the plugin jar. */
+  public static final String BUNDLED_RULES = "/skroutz_greek_rules.txt";
+
+  // the columns of a case row
+  static final int MIN_LENGTH = 0;
+  static final int MAX_LENGTH = 1;
+  static final int SUFFIX = 2;
+  static final int PREFIX = 3;
+  static final int WORD = 4;
+  static final int CUT = 5;
+  static final int RESTORE = 6;
+  static final int APPEND = 7;
+  static final int STOP = 8;
+  static final int CASE_SIZE = 9;
+
+  // the columns of a chain row: [first case, first then-case, end)
+  static final int FIRST_CASE = 0;
+  static final int FIRST_THEN = 1;
+  static final int END = 2;
+  static final int CHAIN_SIZE = 3;
+
+  private final int minLength;
+  private final String[] names;
+  /** chains of rule {@code r} are {@code [ruleChains[r], ruleChains[r + 1])} */
+  private final int[] ruleChains;
+  private final boolean[] sameLength;
+  private final int[] chains;
+  private final int[] cases;
+  private final SuffixAutomaton suffixes;
+  /** {@code ruleWords} longs per automaton node, one bit per rule it can trigger */
+  private final long[] ruleMasks;
+  private final int ruleWords;
+  private final char[][][] prefixes;
+  private final CharArraySet[] words;
+  private final char[][] appends;
+
+  private SkroutzGreekRuleStemmer(Parser parser) {
+    this.minLength = parser.minLength;
+    this.names = parser.names.toArray(new String[0]);
+    this.ruleChains = toArray(parser.ruleChains);
+    this.sameLength = new boolean[names.length];
+    for (int i = 0; i < names.length; i++)
+      sameLength[i] = parser.sameLength.get(i);
+    this.chains = toArray(parser.chains);
+    this.cases = toArray(parser.cases);
+    this.suffixes = parser.suffixes.build();
+    this.ruleWords = (names.length + 63) >>> 6;
+    this.ruleMasks = new long[suffixes.nodeCount() * ruleWords];
+    for (int rule = 0; rule < names.length; rule++) {
+      final int[] triggers = parser.ruleTriggers.get(rule);
+      for (int node = 0; node < suffixes.nodeCount(); node++) {
+        if (triggers == null || matchesAny(node, triggers))
+          ruleMasks[node * ruleWords + (rule >>> 6)] |= 1L << rule;
+      }
+    }
+    this.prefixes = parser.prefixes.toArray(new char[0][][]);
+    this.words = parser.words.toArray(new CharArraySet[0]);
+    this.appends = parser.appends.toArray(new char[0][]);
+  }
+
+  /**
+   * Compiles the rules of {@code reader}.
+   *
+   * @throws IllegalArgumentException if the rules are invalid
+   */
+  public static SkroutzGreekRuleStemmer compile(Reader reader) throws IOException {
+    return new SkroutzGreekRuleStemmer(parse(reader));
+  }
+
+  /**
+   * Reads the rules of {@code reader} into tables, for the stemmer or for
+   * {@code StemmerFuzzer}.
+   */
+  static Parser parse(Reader reader) throws IOException {
+    final Parser parser = new Parser();
+    final BufferedReader lines = new BufferedReader(reader);
+    String line;
+    for (int number = 1; (line = lines.readLine()) != null; number++) {
+      try {
+        parser.line(line);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Invalid stem rule at line " + number + ": " + e.getMessage(), e);
+      }
+    }
+    parser.finish();
+    return parser;
+  }
+
+  /**
+   * Compiles the rules of a UTF-8 rule file.
+   */
+  public static SkroutzGreekRuleStemmer compile(Path file) throws IOException {
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return compile(reader);
+    }
+  }
+
+  /**
+   * Compiles the bundled rule file, {@link #BUNDLED_RULES}.
+   */
+  public static SkroutzGreekRuleStemmer bundled() throws IOException {
+    try (InputStream in = SkroutzGreekRuleStemmer.class.getResourceAsStream(BUNDLED_RULES)) {
+      if (in == null)
+        throw new IOException("missing " + BUNDLED_RULES);
+      return compile(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+  }
+
+  /**
+   * @return the names of the rules, by the rule ids reported to a
+   *         {@link SkroutzGreekStemmer.RuleListener}
+   */
+  public List<String> ruleNames() {
+    return Collections.unmodifiableList(Arrays.asList(names));
+  }
+
+  @Override
+  public int ruleCount() {
+    return names.length;
+  }
+
+  @Override
+  public String ruleName(int rule) {
+    return names[rule];
+  }
+
+  @Override
+  public int stem(char s[], int len) {
+    return stem(s, len, null);
+  }
+
+  /**
+   * A rule is reported when it changed the length of the word or appended to
+   * it.
+   */
+  @Override
+  public int stem(char s[], int len, RuleListener listener) {
+    if (len < minLength) return len;
+
+    final int origLen = len;
+    // the automaton node of the word, or -1 while a rule changes it
+    int node = suffixes.walk(s, len);
+    for (int rule = nextRule(node, 0); rule >= 0; rule = nextRule(node, rule + 1)) {
+      if (sameLength[rule] && len != origLen)
+        continue;
+
+      final int lenBefore = len;
+      boolean appended = false;
+      chains:
+      for (int chain = ruleChains[rule]; chain < ruleChains[rule + 1]; chain++) {
+        final int c = chain * CHAIN_SIZE;
+        for (int part = FIRST_CASE; part <= FIRST_THEN; part++) {
+          if (node < 0)
+            node = suffixes.walk(s, len);
+          final int match = firstMatch(s, len, node, chains[c + part], chains[c + part + 1]);
+          if (match < 0)
+            break;
+
+          final int m = match * CASE_SIZE;
+          len = Math.max(0, len - cases[m + CUT]);
+          len = Math.min(origLen, len + cases[m + RESTORE]);
+          final int append = cases[m + APPEND];
+          if (append >= 0 && len + appends[append].length <= origLen) {
+            System.arraycopy(appends[append], 0, s, len, appends[append].length);
+            len += appends[append].length;
+            appended = true;
+          }
+          node = -1;
+          if (cases[m + STOP] != 0)
+            break chains;
+        }
+      }
+
+      if (listener != null && (len != lenBefore || appended))
+        listener.onRule(rule, lenBefore, len);
+      if (node < 0)
+        node = suffixes.walk(s, len);
+    }
+    return len;
+  }
+
+  /**
+   * Returns the first rule from {@code from} on that a word ending at
+   * {@code node} can trigger, or -1.
+   */
+  private int nextRule(int node, int from) {
+    final int base = node * ruleWords;
+    for (int word = from >>> 6; word < ruleWords; word++) {
+      long rules = ruleMasks[base + word];
+      if (word == from >>> 6)
+        rules &= -1L << from;
+      if (rules != 0)
+        return word << 6 | Long.numberOfTrailingZeros(rules);
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the first case of {@code [from, to)} whose condition holds for
+   * {@code s[0..len)}, or -1.
+   */
+  private int firstMatch(char s[], int len, int node, int from, int to) {
+    for (int i = from; i < to; i++) {
+      final int c = i * CASE_SIZE;
+      if (len < cases[c + MIN_LENGTH] || len > cases[c + MAX_LENGTH])
+        continue;
+      final int suffix = cases[c + SUFFIX];
+      if (suffix >= 0 && !suffixes.matches(node, suffix))
+        continue;
+      final int prefix = cases[c + PREFIX];
+      if (prefix >= 0 && !startsWithAny(s, len, prefixes[prefix]))
+        continue;
+      final int word = cases[c + WORD];
+      if (word >= 0 && !words[word].contains(s, 0, len))
+        continue;
+      return i;
+    }
+    return -1;
+  }
+
+  private boolean matchesAny(int node, int[] groups) {
+    for (int group : groups) {
+      if (suffixes.matches(node, group))
+        return true;
+    }
+    return false;
+  }
+
+  private static boolean startsWithAny(char s[], int len, char prefixes[][]) {
+    for (char[] prefix : prefixes) {
+      if (prefix.length > len)
+        continue;
+      int i = 0;
+      while (i < prefix.length && s[i] == prefix[i])
+        i++;
+      if (i == prefix.length)
+        return true;
+    }
+    return false;
+  }
+
+  private static int[] toArray(List<Integer> values) {
+    final int[] array = new int[values.size()];
+    for (int i = 0; i < array.length; i++)
+      array[i] = values.get(i);
+    return array;
+  }
+
+  /**
+   * Reads a rule file line by line into the tables.
+   */
+  static final class Parser {
+    int minLength = 1;
+    final Map<String, List<String>> sets = new HashMap<>();
+    final List<String> names = new ArrayList<>();
+    final List<Boolean> sameLength = new ArrayList<>();
+    final List<Integer> ruleChains = new ArrayList<>();
+    final List<Integer> chains = new ArrayList<>();
+    final List<Integer> cases = new ArrayList<>();
+
+    final SuffixAutomaton.Builder suffixes = new SuffixAutomaton.Builder();
+    final Map<List<String>, Integer> suffixGroups = new HashMap<>();
+    /** the words of every suffix, prefix and word list, by id */
+    final List<List<String>> suffixLists = new ArrayList<>();
+    final List<List<String>> prefixLists = new ArrayList<>();
+    final List<List<String>> wordLists = new ArrayList<>();
+    final List<char[][]> prefixes = new ArrayList<>();
+    final Map<List<String>, Integer> prefixIds = new HashMap<>();
+    final List<CharArraySet> words = new ArrayList<>();
+    final Map<List<String>, Integer> wordIds = new HashMap<>();
+    final List<char[]> appends = new ArrayList<>();
+    /**
+     * per rule, the suffix groups that a word must end with one of for the
+     * rule to match, or null if any word can
+     */
+    final List<int[]> ruleTriggers = new ArrayList<>();
+    /** the suffix groups of the word lists that a rule is triggered by */
+    private final Map<Integer, Integer> wordGroups = new HashMap<>();
+
+    /** whether the current chain has had a case, and a then-case */
+    boolean inChain;
+    boolean inThen;
+    /** whether the last case of the chain or of its then-cases was an else */
+    boolean closed;
+
+    void line(String line) {
+      final int comment = line.indexOf('#');
+      if (comment >= 0)
+        line = line.substring(0, comment);
+      final List<String> tokens = new ArrayList<>(Arrays.asList(line.trim().split("\\s+")));
+      if (tokens.get(0).isEmpty())
+        return;
+
+      switch (tokens.get(0)) {
+        case "min-length":
+          if (tokens.size() != 2)
+            throw new IllegalArgumentException("expected min-length N");
+          minLength = number(tokens.get(1));
+          break;
+        case "set":
+          if (tokens.size() < 3)
+            throw new IllegalArgumentException("expected set NAME WORD...");
+          sets.computeIfAbsent(tokens.get(1), name -> new ArrayList<>())
+              .addAll(words(tokens.subList(2, tokens.size())));
+          break;
+        case "rule":
+          rule(tokens);
+          break;
+        case "if":
+        case "elif":
+        case "else":
+        case "else:":
+        case "then":
+          caseLine(line.trim());
+          break;
+        default:
+          throw new IllegalArgumentException("unknown directive [" + tokens.get(0) + "]");
+      }
+    }
+
+    private void rule(List<String> tokens) {
+      if (tokens.size() < 2 || tokens.size() > 3 || tokens.size() == 3 && !"same-length".equals(tokens.get(2)))
+        throw new IllegalArgumentException("expected rule NAME [same-length]");
+      if (names.contains(tokens.get(1)))
+        throw new IllegalArgumentException("duplicate rule [" + tokens.get(1) + "]");
+      endChain();
+      names.add(tokens.get(1));
+      sameLength.add(tokens.size() == 3);
+      ruleChains.add(chains.size() / CHAIN_SIZE);
+    }
+
+    private void caseLine(String line) {
+      if (names.isEmpty())
+        throw new IllegalArgumentException("case outside of a rule");
+      final int colon = line.indexOf(':');
+      if (colon < 0)
+        throw new IllegalArgumentException("expected a ':' before the actions");
+      final List<String> head = new ArrayList<>(Arrays.asList(line.substring(0, colon).trim().split("\\s+")));
+      final List<String> actions = Arrays.asList(line.substring(colon + 1).trim().split("\\s+"));
+
+      final boolean then = "then".equals(head.get(0));
+      if (then)
+        head.remove(0);
+      final String kind = head.isEmpty() ? "" : head.remove(0);
+
+      if (then) {
+        if (!inChain)
+          throw new IllegalArgumentException("then without a chain");
+        if ("if".equals(kind)) {
+          if (inThen)
+            throw new IllegalArgumentException("a chain has a single then if");
+          inThen = true;
+          closed = false;
+          set(chains.size() - CHAIN_SIZE + FIRST_THEN, cases.size() / CASE_SIZE);
+        } else if (!inThen) {
+          throw new IllegalArgumentException("then " + kind + " without then if");
+        }
+      } else if ("if".equals(kind)) {
+        endChain();
+        inChain = true;
+        closed = false;
+        chains.add(cases.size() / CASE_SIZE);
+        chains.add(-1);
+        chains.add(-1);
+      } else if (!inChain || inThen) {
+        throw new IllegalArgumentException(kind + " without if");
+      }
+
+      if (!"if".equals(kind) && !"elif".equals(kind) && !"else".equals(kind))
+        throw new IllegalArgumentException("expected if, elif or else");
+      if ("else".equals(kind) != head.isEmpty())
+        throw new IllegalArgumentException("else takes no condition, if and elif need one");
+      if (closed)
+        throw new IllegalArgumentException("no case can follow an else");
+      closed = "else".equals(kind);
+
+      final int[] row = new int[CASE_SIZE];
+      row[MAX_LENGTH] = Integer.MAX_VALUE;
+      row[SUFFIX] = row[PREFIX] = row[WORD] = row[APPEND] = -1;
+      condition(head, row);
+      actions(actions, row);
+      for (int value : row)
+        cases.add(value);
+    }
+
+    private void condition(List<String> tokens, int[] row) {
+      for (int i = 0; i < tokens.size();) {
+        final String atom = tokens.get(i++);
+        int end = i;
+        while (end < tokens.size() && !"and".equals(tokens.get(end)))
+          end++;
+        final List<String> args = tokens.subList(i, end);
+        switch (atom) {
+          case "length":
+            if (args.size() != 2)
+              throw new IllegalArgumentException("expected length > N, length < N or length = N");
+            final int n = number(args.get(1));
+            if (">".equals(args.get(0)))
+              row[MIN_LENGTH] = Math.max(row[MIN_LENGTH], n + 1);
+            else if ("<".equals(args.get(0)))
+              row[MAX_LENGTH] = Math.min(row[MAX_LENGTH], n - 1);
+            else if ("=".equals(args.get(0)))
+              row[MIN_LENGTH] = row[MAX_LENGTH] = n;
+            else
+              throw new IllegalArgumentException("unknown comparison [" + args.get(0) + "]");
+            break;
+          case "suffix":
+            row[SUFFIX] = once(row[SUFFIX], suffixGroups.computeIfAbsent(words(args), list -> {
+              suffixLists.add(list);
+              return suffixes.add(list.toArray(new String[0]));
+            }), atom);
+            break;
+          case "prefix":
+            row[PREFIX] = once(row[PREFIX], prefixIds.computeIfAbsent(words(args), list -> {
+              final char[][] chars = new char[list.size()][];
+              for (int p = 0; p < chars.length; p++)
+                chars[p] = list.get(p).toCharArray();
+              prefixes.add(chars);
+              prefixLists.add(list);
+              return prefixes.size() - 1;
+            }), atom);
+            break;
+          case "word":
+            row[WORD] = once(row[WORD], wordIds.computeIfAbsent(words(args), list -> {
+              words.add(new CharArraySet(list, false));
+              wordLists.add(list);
+              return words.size() - 1;
+            }), atom);
+            break;
+          default:
+            throw new IllegalArgumentException("unknown condition [" + atom + "]");
+        }
+        i = end + 1;
+      }
+    }
+
+    private void actions(List<String> tokens, int[] row) {
+      if (tokens.get(0).isEmpty())
+        throw new IllegalArgumentException("expected actions, or keep");
+      final List<String> order = Arrays.asList("cut", "restore", "append", "stop");
+      int last = -1;
+      for (int i = 0; i < tokens.size(); i++) {
+        final String action = tokens.get(i);
+        if ("keep".equals(action) && tokens.size() == 1)
+          return;
+        final int position = order.indexOf(action);
+        if (position < 0)
+          throw new IllegalArgumentException("unknown action [" + action + "]");
+        if (position <= last)
+          throw new IllegalArgumentException("actions must be given once each, in the order " + order);
+        last = position;
+        if ("stop".equals(action)) {
+          row[STOP] = 1;
+          continue;
+        }
+        if (++i == tokens.size())
+          throw new IllegalArgumentException("[" + action + "] needs an argument");
+        if ("append".equals(action)) {
+          appends.add(tokens.get(i).toCharArray());
+          row[APPEND] = appends.size() - 1;
+        } else {
+          row["cut".equals(action) ? CUT : RESTORE] = number(tokens.get(i));
+        }
+      }
+    }
+
+    private List<String> words(List<String> tokens) {
+      final List<String> words = new ArrayList<>();
+      for (String token : tokens) {
+        if (token.startsWith("%")) {
+          final List<String> set = sets.get(token.substring(1));
+          if (set == null)
+            throw new IllegalArgumentException("unknown set [" + token.substring(1) + "]");
+          words.addAll(set);
+        } else {
+          words.add(token);
+        }
+      }
+      if (words.isEmpty())
+        throw new IllegalArgumentException("expected words");
+      return words;
+    }
+
+    private static int once(int current, int value, String atom) {
+      if (current >= 0)
+        throw new IllegalArgumentException("[" + atom + "] can only be given once per case");
+      return value;
+    }
+
+    private static int number(String token) {
+      try {
+        final int n = Integer.parseInt(token);
+        if (n < 0)
+          throw new IllegalArgumentException("expected a number >= 0, got [" + token + "]");
+        return n;
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("expected a number, got [" + token + "]");
+      }
+    }
+
+    private void set(int index, int value) {
+      chains.set(index, value);
+    }
+
+    /** closes the current chain, whose then-cases end where it ends */
+    private void endChain() {
+      if (inChain) {
+        final int end = cases.size() / CASE_SIZE;
+        if (chains.get(chains.size() - CHAIN_SIZE + FIRST_THEN) < 0)
+          set(chains.size() - CHAIN_SIZE + FIRST_THEN, end);
+        set(chains.size() - CHAIN_SIZE + END, end);
+      }
+      inChain = false;
+      inThen = false;
+    }
+
+    void finish() {
+      endChain();
+      if (names.isEmpty())
+        throw new IllegalArgumentException("Invalid stem rules: no rules");
+      ruleChains.add(chains.size() / CHAIN_SIZE);
+      for (int rule = 0; rule < names.size(); rule++)
+        ruleTriggers.add(triggers(rule));
+    }
+
+    /**
+     * A rule can only do something if the first case of one of its chains
+     * matches, so it is triggered by the suffixes of those cases. A word
+     * condition is a suffix condition too, since a word ends with itself;
+     * a first case with neither, such as an else, matches any word.
+     */
+    private int[] triggers(int rule) {
+      final List<Integer> groups = new ArrayList<>();
+      for (int chain = ruleChains.get(rule); chain < ruleChains.get(rule + 1); chain++) {
+        final int c = chain * CHAIN_SIZE;
+        for (int i = chains.get(c + FIRST_CASE); i < chains.get(c + FIRST_THEN); i++) {
+          final int suffix = cases.get(i * CASE_SIZE + SUFFIX);
+          final int word = cases.get(i * CASE_SIZE + WORD);
+          if (suffix >= 0)
+            groups.add(suffix);
+          else if (word >= 0)
+            groups.add(wordGroups.computeIfAbsent(word,
+                w -> suffixes.add(wordLists.get(w).toArray(new String[0]))));
+          else
+            return null;
+        }
+      }
+      return toArray(groups);
+    }
+  }
+}
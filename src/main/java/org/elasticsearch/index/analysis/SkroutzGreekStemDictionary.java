@@ -0,0 +1,121 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.analysis.miscellaneous.StemmerOverrideFilter.StemmerOverrideMap;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IntsRef;
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.ByteSequenceOutputs;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.OffHeapFSTStore;
+import org.apache.lucene.util.fst.Util;
+
+/**
+ * A precomputed word to stem dictionary, stored as an FST file.
+ * <p>
+ * The dictionary is built offline by running {@link SkroutzGreekStemmer} over a
+ * word list, see {@link #main(String[])}. It is opened memory-mapped, with the
+ * FST read off the Java heap, and wrapped in a {@link StemmerOverrideMap} so
+ * that {@link SkroutzGreekStemTokenFilter} can resolve known words with a
+ * single lookup and only run the stemming rules for unknown ones.
+ */
+public final class SkroutzGreekStemDictionary {
+	static final String CODEC_NAME = "skroutz_greek_stem_dictionary";
+	static final int VERSION_START = 0;
+	static final int VERSION_CURRENT = VERSION_START;
+
+	private SkroutzGreekStemDictionary() { }
+
+	/**
+	 * Stems every word of {@code words} and writes the word to stem FST to
+	 * {@code file}.
+	 */
+	public static void build(Iterable<String> words, Path file) throws IOException {
+		final SkroutzGreekStemmer stemmer = SkroutzGreekStemmer.INSTANCE;
+		// FST inputs must be added in code point order
+		final TreeMap<IntsRef, BytesRef> stems = new TreeMap<>();
+		for (String word : words) {
+			if (word.isEmpty())
+				continue;
+			final char[] token = word.toCharArray();
+			final int stemLength = stemmer.stem(token, token.length);
+			final IntsRefBuilder input = new IntsRefBuilder();
+			Util.toUTF32(word, input);
+			stems.put(input.toIntsRef(), new BytesRef(new String(token, 0, stemLength)));
+		}
+
+		final ByteSequenceOutputs outputs = ByteSequenceOutputs.getSingleton();
+		final Builder<BytesRef> builder = new Builder<>(FST.INPUT_TYPE.BYTE4, outputs);
+		for (Map.Entry<IntsRef, BytesRef> stem : stems.entrySet())
+			builder.add(stem.getKey(), stem.getValue());
+		final FST<BytesRef> fst = builder.finish();
+
+		try (Directory dir = FSDirectory.open(file.toAbsolutePath().getParent());
+			 IndexOutput out = dir.createOutput(file.getFileName().toString(), IOContext.DEFAULT)) {
+			CodecUtil.writeHeader(out, CODEC_NAME, VERSION_CURRENT);
+			fst.save(out);
+			CodecUtil.writeFooter(out);
+		}
+	}
+
+	/**
+	 * Opens a dictionary written by {@link #build(Iterable, Path)}. The file
+	 * stays memory-mapped for as long as the returned map is reachable, and is
+	 * unmapped when it is garbage collected, so it must be replaced with a new
+	 * file rather than overwritten in place.
+	 */
+	public static StemmerOverrideMap open(Path file) throws IOException {
+		// closing the directory leaves its inputs open
+		try (Directory dir = new MMapDirectory(file.toAbsolutePath().getParent())) {
+			final IndexInput in = dir.openInput(file.getFileName().toString(), IOContext.READ);
+			boolean success = false;
+			try {
+				CodecUtil.checksumEntireFile(in);
+				in.seek(0);
+				CodecUtil.checkHeader(in, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+				final FST<BytesRef> fst = new FST<>(in, ByteSequenceOutputs.getSingleton(), new OffHeapFSTStore());
+				success = true;
+				return new StemmerOverrideMap(fst, false);
+			} finally {
+				if (success == false)
+					in.close();
+			}
+		}
+	}
+
+	/**
+	 * Builds a dictionary from a word list with one word per line; anything
+	 * after a comma is ignored, so stemming_samples.txt can be used as is.
+	 * <p>
+	 * Usage: {@code SkroutzGreekStemDictionary <words file> <dictionary file>}
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: SkroutzGreekStemDictionary <words file> <dictionary file>");
+			System.exit(1);
+		}
+
+		final List<String> lines = Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8);
+		lines.replaceAll(line -> {
+			final int comma = line.indexOf(',');
+			return (comma < 0 ? line : line.substring(0, comma)).trim();
+		});
+		build(lines, Paths.get(args[1]));
+	}
+}
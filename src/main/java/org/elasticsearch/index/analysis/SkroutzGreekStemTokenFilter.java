@@ -1,10 +1,21 @@
 package org.elasticsearch.index.analysis;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.apache.lucene.analysis.TokenFilter;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.miscellaneous.StemmerOverrideFilter.StemmerOverrideMap;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.UnicodeUtil;
+import org.apache.lucene.util.fst.FST;
 
 /**
  * A {@link TokenFilter} that applies {@link SkroutzGreekStemmer} to stem Greek
@@ -14,29 +25,342 @@ import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
  * sigma to sigma), and with diacritics removed. This can be achieved by using
  * either {@link org.apache.lucene.analysis.el.GreekLowerCaseFilter} or
  *  ICUFoldingFilter before GreekStemFilter.
+ * <p>
+ * Words found in the optional stem exceptions map, or else in the optional
+ * precomputed {@link SkroutzGreekStemDictionary}, are replaced by their mapped
+ * stem and are not run through the stemming rules.
+ * <p>
+ * With {@link #GREEK_ONLY} and {@link #SKIP_DIGITS}, terms without Greek letters
+ * or with digits, such as model numbers, SKUs and Latin brand names, bypass the
+ * dictionary and the stemming rules. The token type is used where the
+ * tokenizer already classified the term.
+ * <p>
+ * With {@link #FOLD}, the term is casefolded by {@link SkroutzGreekFolding}
+ * first, so no casefolding filter is needed in front of the filter; the output
+ * is identical to {@link org.apache.lucene.analysis.el.GreekLowerCaseFilter}
+ * followed by the filter without it. Keyword terms are casefolded too.
+ * <p>
+ * With {@link #PRESERVE_ORIGINAL}, a term that the filter changes is emitted
+ * twice: first as it reached the stemmer, then as its stem at the same
+ * position. Terms left as they are are emitted once.
+ * <p>
+ * An optional per-stream memo of recent stems, and then an optional node-wide
+ * {@link StemCache}, are consulted before running the stemming rules, and
+ * filled with their result on a miss.
+ * <p>
+ * With {@link StemmerMetrics}, the filter counts what it does with every token
+ * and runs the rules through the instrumented
+ * {@link SkroutzGreekStemmer#stem(char[], int, SkroutzGreekStemmer.RuleListener)}.
  *
  * Exported from @lucene.experiment and modified in order to use the Skroutz
  * Greek stemmer.
  */
-public class SkroutzGreekStemTokenFilter extends TokenFilter {
-    private final SkroutzGreekStemmer stemmer = new SkroutzGreekStemmer();
+public final class SkroutzGreekStemTokenFilter extends TokenFilter {
+	/** Do not stem terms that contain no Greek letters. */
+	public static final int GREEK_ONLY = 1;
+	/** Do not stem terms that contain digits. */
+	public static final int SKIP_DIGITS = 2;
+	/** Also emit the unstemmed term, at the same position as its stem. */
+	public static final int PRESERVE_ORIGINAL = 4;
+	/** Casefold the term before stemming it, like GreekLowerCaseFilter. */
+	public static final int FOLD = 8;
+
+	/** StandardTokenizer's type for numbers */
+	private static final String NUM_TYPE = "<NUM>";
+	/** StandardTokenizer's types for scripts other than Greek */
+	private static final Set<String> NON_GREEK_TYPES = new HashSet<>(Arrays.asList(
+			"<SOUTHEAST_ASIAN>", "<IDEOGRAPHIC>", "<HIRAGANA>", "<KATAKANA>",
+			"<HANGUL>", "<EMOJI>"));
+
+	private final SkroutzGreekStemmer stemmer;
 	private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
 	private final KeywordAttribute keywordAttr = addAttribute(KeywordAttribute.class);
+	private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+	private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+
+	private final StemmerOverrideMap exceptions;
+	private final FST.BytesReader exceptionsReader;
+	private final StemmerOverrideMap dictionary;
+	private final FST.BytesReader dictionaryReader;
+	private final FST.Arc<BytesRef> scratchArc = new FST.Arc<>();
+	private final StemCache cache;
+	/** the unstemmed term, kept to fill the cache after stemming it */
+	private char[] cacheKey;
+	private final StemMemo memo;
+	private final StemmerMetrics metrics;
+	/** {@link #metrics}, when they can count the rules of {@link #stemmer} */
+	private final SkroutzGreekStemmer.RuleListener ruleMetrics;
+	/** stemmed tokens, to time one in {@link StemmerMetrics#SAMPLE_MASK} + 1 */
+	private int stemmedCount;
+	/** whether the current token is timed, and so stemmed without {@link #ruleMetrics} */
+	private boolean timing;
+	/** whether the rules ran on the timed token */
+	private boolean timedRules;
+	/** the timed token before stemming, to count its rules after the timing */
+	private char[] timedTerm;
+	private final int flags;
+	/** the unstemmed term, with {@link #PRESERVE_ORIGINAL} */
+	private char[] original;
+	/** the stem to emit after its original term */
+	private State stemState;
 
 	public SkroutzGreekStemTokenFilter(TokenStream input) {
+		this(input, null, null, null, null, 0, 0);
+	}
+
+	/**
+	 * @param exceptions word to stem overrides, looked up before the stemming
+	 *                   rules; may be null
+	 * @param dictionary precomputed word to stem map, looked up after the
+	 *                   exceptions and before the stemming rules; may be null
+	 * @param cache      node-wide cache of stems computed by the rules; may be null
+	 * @param metrics    node-wide stemming metrics; may be null
+	 * @param memoSize   slots of the memo of this stream's recent stems, 0 for none
+	 * @param flags      a combination of {@link #GREEK_ONLY}, {@link #SKIP_DIGITS},
+	 *                   {@link #PRESERVE_ORIGINAL} and {@link #FOLD}
+	 */
+	public SkroutzGreekStemTokenFilter(TokenStream input, StemmerOverrideMap exceptions,
+									   StemmerOverrideMap dictionary, StemCache cache,
+									   StemmerMetrics metrics, int memoSize, int flags) {
+		this(input, exceptions, dictionary, cache, metrics, memoSize, flags, SkroutzGreekStemmer.INSTANCE);
+	}
+
+	/**
+	 * The same, with the rules of {@code stemmer} instead of the built-in ones,
+	 * such as a {@link SkroutzGreekRuleStemmer}. The rules of a stemmer other
+	 * than {@link StemmerMetrics#stemmer()} are not counted in {@code metrics},
+	 * and {@code cache} must only hold stems of {@code stemmer}.
+	 */
+	public SkroutzGreekStemTokenFilter(TokenStream input, StemmerOverrideMap exceptions,
+									   StemmerOverrideMap dictionary, StemCache cache,
+									   StemmerMetrics metrics, int memoSize, int flags,
+									   SkroutzGreekStemmer stemmer) {
 		super(input);
+		this.stemmer = stemmer;
+		this.flags = flags;
+		this.cache = cache;
+		this.metrics = metrics;
+		this.ruleMetrics = metrics != null && metrics.stemmer() == stemmer ? metrics : null;
+		this.memo = memoSize == 0 ? null : new StemMemo(memoSize);
+		this.cacheKey = cache == null ? null : new char[ArrayUtil.oversize(32, Character.BYTES)];
+		this.exceptions = exceptions;
+		this.exceptionsReader = exceptions == null ? null : exceptions.getBytesReader();
+		this.dictionary = dictionary;
+		this.dictionaryReader = dictionary == null ? null : dictionary.getBytesReader();
+		this.original = (flags & PRESERVE_ORIGINAL) == 0 ? null : new char[ArrayUtil.oversize(32, Character.BYTES)];
 	}
 
 	@Override
 	public boolean incrementToken() throws IOException {
+		if (stemState != null) {
+			restoreState(stemState);
+			stemState = null;
+			posIncAtt.setPositionIncrement(0);
+			return true;
+		}
+
 		if (input.incrementToken()) {
-			if (!keywordAttr.isKeyword()) {
-				final int newlen = stemmer.stem(termAtt.buffer(), termAtt.length());
-				termAtt.setLength(newlen);
+			if ((flags & FOLD) != 0)
+				SkroutzGreekFolding.fold(termAtt.buffer(), termAtt.length());
+			final int originalLength = termAtt.length();
+			if (original != null) {
+				if (original.length < originalLength)
+					original = new char[ArrayUtil.oversize(originalLength, Character.BYTES)];
+				System.arraycopy(termAtt.buffer(), 0, original, 0, originalLength);
+			}
+
+			if (metrics != null) {
+				stemInstrumented();
+			} else if (!keywordAttr.isKeyword()
+					&& !applyOverride(exceptions, exceptionsReader)
+					&& !skipStemming()
+					&& !applyOverride(dictionary, dictionaryReader)) {
+				stemTerm();
+			}
+
+			if (original != null && !termEquals(original, originalLength)) {
+				stemState = captureState();
+				termAtt.copyBuffer(original, 0, originalLength);
 			}
 			return true;
 		} else {
 			return false;
 		}
 	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		stemState = null;
+	}
+
+	private boolean termEquals(char[] term, int length) {
+		if (termAtt.length() != length)
+			return false;
+		final char[] buffer = termAtt.buffer();
+		for (int i = 0; i < length; i++)
+			if (buffer[i] != term[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * The same steps as {@link #incrementToken()}, counted in {@link #metrics}.
+	 */
+	private void stemInstrumented() throws IOException {
+		if (keywordAttr.isKeyword()) {
+			metrics.onSkipped();
+		} else if (applyOverride(exceptions, exceptionsReader)) {
+			metrics.onOverridden();
+		} else if (skipStemming()) {
+			metrics.onSkipped();
+		} else if (applyOverride(dictionary, dictionaryReader)) {
+			metrics.onOverridden();
+		} else {
+			metrics.onStemmed();
+			if ((++stemmedCount & StemmerMetrics.SAMPLE_MASK) != 0) {
+				stemTerm();
+			} else {
+				stemTimed();
+			}
+		}
+	}
+
+	/**
+	 * Stems a sampled token and records the time it took. The rules run
+	 * without {@link #ruleMetrics}, as they do without metrics, and are
+	 * counted afterwards on a copy of the token.
+	 */
+	private void stemTimed() {
+		final int length = termAtt.length();
+		if (ruleMetrics != null) {
+			if (timedTerm == null || timedTerm.length < length)
+				timedTerm = new char[ArrayUtil.oversize(length, Character.BYTES)];
+			System.arraycopy(termAtt.buffer(), 0, timedTerm, 0, length);
+		}
+
+		timing = true;
+		timedRules = false;
+		final long start = System.nanoTime();
+		stemTerm();
+		metrics.onSample(System.nanoTime() - start);
+		timing = false;
+
+		if (timedRules)
+			stemmer.stem(timedTerm, length, ruleMetrics);
+	}
+
+	private void stemTerm() {
+		if (memo == null)
+			stem();
+		else
+			stemMemoized();
+	}
+
+	private void stem() {
+		if (cache == null) {
+			final int newlen = stemRules(termAtt.buffer(), termAtt.length());
+			termAtt.setLength(newlen);
+		} else {
+			stemCached();
+		}
+	}
+
+	private int stemRules(char[] buffer, int length) {
+		if (ruleMetrics == null)
+			return stemmer.stem(buffer, length);
+		if (timing) {
+			timedRules = true;
+			return stemmer.stem(buffer, length);
+		}
+		return stemmer.stem(buffer, length, ruleMetrics);
+	}
+
+	private void stemMemoized() {
+		final char[] buffer = termAtt.buffer();
+		final int length = termAtt.length();
+		final int slot = memo.find(buffer, length);
+		if (slot >= 0) {
+			termAtt.copyBuffer(memo.stem(slot), 0, memo.stemLength(slot));
+			return;
+		}
+
+		final int emptySlot = -(slot + 1);
+		memo.setWord(emptySlot, buffer, length);
+		stem();
+		memo.setStem(emptySlot, termAtt.buffer(), termAtt.length());
+	}
+
+	private void stemCached() {
+		final char[] buffer = termAtt.buffer();
+		final int length = termAtt.length();
+		final char[] stem = cache.get(buffer, length);
+		if (stem != null) {
+			termAtt.copyBuffer(stem, 0, stem.length);
+			return;
+		}
+
+		if (cacheKey.length < length)
+			cacheKey = new char[ArrayUtil.oversize(length, Character.BYTES)];
+		System.arraycopy(buffer, 0, cacheKey, 0, length);
+		final int newlen = stemRules(buffer, length);
+		termAtt.setLength(newlen);
+		cache.put(cacheKey, length, buffer, newlen);
+	}
+
+	/**
+	 * Whether the term is left as is because of {@link #GREEK_ONLY} or
+	 * {@link #SKIP_DIGITS}.
+	 */
+	private boolean skipStemming() {
+		if ((flags & (GREEK_ONLY | SKIP_DIGITS)) == 0)
+			return false;
+
+		final String type = typeAtt.type();
+		if ((flags & SKIP_DIGITS) != 0 && NUM_TYPE.equals(type))
+			return true;
+		if ((flags & GREEK_ONLY) != 0 && NON_GREEK_TYPES.contains(type))
+			return true;
+
+		final boolean skipDigits = (flags & SKIP_DIGITS) != 0;
+		final char[] buffer = termAtt.buffer();
+		boolean greek = false;
+		for (int i = 0, length = termAtt.length(); i < length; i++) {
+			final char c = buffer[i];
+			if (isGreek(c)) {
+				greek = true;
+				if (!skipDigits)
+					break;
+			} else if (skipDigits && (c >= '0' && c <= '9' || c >= 0x80 && Character.isDigit(c))) {
+				return true;
+			}
+		}
+		return (flags & GREEK_ONLY) != 0 && !greek;
+	}
+
+	private static boolean isGreek(char c) {
+		// Greek and Coptic, Greek Extended
+		return c >= 0x0370 && c <= 0x03FF || c >= 0x1F00 && c <= 0x1FFF;
+	}
+
+	/**
+	 * Replaces the term with its stem in {@code overrides}, if it has one.
+	 */
+	private boolean applyOverride(StemmerOverrideMap overrides, FST.BytesReader fstReader)
+			throws IOException {
+		if (fstReader == null)
+			return false;
+
+		final BytesRef stem = overrides.get(termAtt.buffer(), termAtt.length(), scratchArc, fstReader);
+		if (stem == null)
+			return false;
+
+		final char[] buffer = ArrayUtil.grow(termAtt.buffer(), stem.length);
+		final int length = UnicodeUtil.UTF8toUTF16(stem, buffer);
+		if (buffer != termAtt.buffer())
+			termAtt.copyBuffer(buffer, 0, length);
+		else
+			termAtt.setLength(length);
+		return true;
+	}
 }
@@ -1,12 +1,6 @@
 package org.elasticsearch.index.analysis;
 
-import java.util.Arrays;
-
 import org.apache.lucene.analysis.el.GreekLowerCaseFilter;
-import org.apache.lucene.analysis.CharArraySet;
-
-import org.apache.logging.log4j.Logger;
-import org.elasticsearch.common.logging.Loggers;
 
 /**
  * Licensed to the Apache Software Foundation (ASF) under one or more
@@ -54,10 +48,33 @@ import org.elasticsearch.common.logging.Loggers;
  * <p>
  * Following the same strategy with the Greek stemmer of lucene, some exceptions
  * about these suffixes are added.
+ * <p>
+ * The suffixes that the rules test for are compiled once, at class-load time,
+ * into a single {@link SuffixAutomaton}. A token is walked backwards once and
+ * every rule then checks its suffix groups with a bit test; the token is only
+ * walked again after a rule has changed it. Every node also records which
+ * rules its token can trigger at all, so that the rules that would leave the
+ * token as it is are not run.
+ * <p>
+ * The stemmer holds no state: all its tables are static and {@link #stem}
+ * only works on the given buffer, so a single instance, {@link #INSTANCE},
+ * is shared by every token filter and thread.
  */
 public class SkroutzGreekStemmer {
-  protected final Logger logger =
-          Loggers.getLogger(SkroutzGreekStemmer.class, SkroutzGreekStemmer.class.getSimpleName());
+  /**
+   * Collects the suffix groups of every rule; see {@link #SUFFIXES}.
+   */
+  private static final SuffixAutomaton.Builder SUFFIX_GROUPS =
+      new SuffixAutomaton.Builder();
+
+  /**
+   * Collects the exception word sets of every rule; see {@link #EXCEPTIONS}.
+   */
+  private static final ExceptionSets.Builder EXCEPTION_SETS =
+      new ExceptionSets.Builder();
+
+  /** The shared stemmer. */
+  public static final SkroutzGreekStemmer INSTANCE = new SkroutzGreekStemmer();
 
   public SkroutzGreekStemmer() { }
 
@@ -66,168 +83,250 @@ public class SkroutzGreekStemmer {
     if (len < 3) return len;
 
     final int origLen = len;
-    // "short rules": if it hits one of these, it skips the "long list"
-    len = rule0(s, len);
-    len = rule1(s, len);
-    len = rule2(s, len);
-    len = rule3(s, len);
-    len = rule4(s, len);
-    len = rule5a(s, len);
-    len = rule5b(s, len);
-    len = rule6(s, len);
-    len = rule7(s, len);
-    len = rule8(s, len);
-    len = rule9(s, len);
-    len = rule10(s, len);
-    len = rule11(s, len);
-    len = rule12(s, len);
-    len = rule13(s, len);
-    len = rule14(s, len);
-    len = rule15(s, len);
-    len = rule16(s, len);
-    len = rule17(s, len);
-    len = rule18(s, len);
-    len = rule19(s, len);
-    len = rule20(s, len);
-    len = rule21(s, len);
-    // "long list"
-    if (len == origLen)
-      len = rule22(s, len);
-
-    return rule23(s, len);
+    // every rule gets the automaton node of the current token end and the
+    // token is only walked again once a rule has actually changed it
+    int node = SUFFIXES.walk(s, len);
+    // only the rules whose entry suffixes the token ends with can change it,
+    // so the "short rules" that cannot are skipped; after a change only the
+    // later rules that the new ending can trigger are left
+    int pending = RULE_MASKS[node] & SHORT_RULES;
+    while (pending != 0) {
+      final int rule = Integer.numberOfTrailingZeros(pending);
+      final int newLen = rule(rule, s, len, node);
+      // rule5b may rewrite -ιο/-ια to -αι in place, without changing the length
+      if (newLen != len || rule == RULE5B && rewroteIo(s, len, node)) {
+        node = SUFFIXES.walk(s, len = newLen);
+        pending = RULE_MASKS[node] & SHORT_RULES & (-2 << rule);
+      } else {
+        pending &= pending - 1;
+      }
+    }
+
+    // "long list": if it hit one of the short rules, it skips it
+    if (len == origLen && (RULE_MASKS[node] & 1 << RULE22) != 0) {
+      final int newLen = rule22(s, len, node);
+      if (newLen != len) node = SUFFIXES.walk(s, len = newLen);
+    }
+
+    if ((RULE_MASKS[node] & 1 << RULE23) != 0)
+      return rule23(s, len, node);
+    return len;
+  }
+
+  /** The number of rules, {@code rule0} to {@code rule23}. */
+  private static final int RULE_COUNT = 25;
+  private static final String[] RULE_NAMES = { "rule0", "rule1", "rule2",
+      "rule3", "rule4", "rule5a", "rule5b", "rule6", "rule7", "rule8", "rule9",
+      "rule10", "rule11", "rule12", "rule13", "rule14", "rule15", "rule16",
+      "rule17", "rule18", "rule19", "rule20", "rule21", "rule22", "rule23" };
+  private static final int RULE5B = 6;
+  private static final int RULE22 = 23;
+  private static final int RULE23 = 24;
+  /** the bits of {@code rule0} to {@code rule21} */
+  private static final int SHORT_RULES = (1 << RULE22) - 1;
+
+  /**
+   * Returns the number of rules of this stemmer; the rule ids reported to a
+   * {@link RuleListener} are below it.
+   */
+  public int ruleCount() {
+    return RULE_COUNT;
+  }
+
+  /**
+   * Returns the name of rule {@code rule}, as reported to a {@link RuleListener}.
+   */
+  public String ruleName(int rule) {
+    return RULE_NAMES[rule];
+  }
+
+  /**
+   * Receives every rule that changed the token, in order, from
+   * {@link #stem(char[], int, RuleListener)}.
+   */
+  public interface RuleListener {
+    void onRule(int rule, int lenBefore, int lenAfter);
+  }
+
+  /**
+   * The same as {@link #stem(char[], int)}, but reports every rule that
+   * changed the token to {@code listener}.
+   * <p>
+   * It skips the same rules as {@link #stem(char[], int)}, which cannot
+   * change the token and so would never be reported, so that instrumenting
+   * the stemmer only adds the calls to the listener.
+   */
+  public int stem(char s[], int len, RuleListener listener) {
+    if (len < 3) return len;
+
+    final int origLen = len;
+    int node = SUFFIXES.walk(s, len);
+    int pending = RULE_MASKS[node] & SHORT_RULES;
+    while (pending != 0) {
+      final int rule = Integer.numberOfTrailingZeros(pending);
+      final int newLen = rule(rule, s, len, node);
+      if (newLen != len || rule == RULE5B && rewroteIo(s, len, node)) {
+        listener.onRule(rule, len, newLen);
+        node = SUFFIXES.walk(s, len = newLen);
+        pending = RULE_MASKS[node] & SHORT_RULES & (-2 << rule);
+      } else {
+        pending &= pending - 1;
+      }
+    }
+
+    // the "long list" only runs if none of the short rules hit
+    if (len == origLen && (RULE_MASKS[node] & 1 << RULE22) != 0) {
+      final int newLen = rule22(s, len, node);
+      if (newLen != len) {
+        listener.onRule(RULE22, len, newLen);
+        node = SUFFIXES.walk(s, len = newLen);
+      }
+    }
+
+    if ((RULE_MASKS[node] & 1 << RULE23) == 0)
+      return len;
+    final int newLen = rule23(s, len, node);
+    if (newLen != len)
+      listener.onRule(RULE23, len, newLen);
+    return newLen;
+  }
+
+  private int rule(int rule, char s[], int len, int node) {
+    switch (rule) {
+      case 0: return rule0(s, len, node);
+      case 1: return rule1(s, len, node);
+      case 2: return rule2(s, len, node);
+      case 3: return rule3(s, len, node);
+      case 4: return rule4(s, len, node);
+      case 5: return rule5a(s, len, node);
+      case 6: return rule5b(s, len, node);
+      case 7: return rule6(s, len, node);
+      case 8: return rule7(s, len, node);
+      case 9: return rule8(s, len, node);
+      case 10: return rule9(s, len, node);
+      case 11: return rule10(s, len, node);
+      case 12: return rule11(s, len, node);
+      case 13: return rule12(s, len, node);
+      case 14: return rule13(s, len, node);
+      case 15: return rule14(s, len, node);
+      case 16: return rule15(s, len, node);
+      case 17: return rule16(s, len, node);
+      case 18: return rule17(s, len, node);
+      case 19: return rule18(s, len, node);
+      case 20: return rule19(s, len, node);
+      case 21: return rule20(s, len, node);
+      case 22: return rule21(s, len, node);
+      case 23: return rule22(s, len, node);
+      case 24: return rule23(s, len, node);
+      default: throw new IllegalArgumentException("no rule " + rule);
+    }
   }
 
-  private int rule0(char s[], int len) {
-    if (len > 9 && (endsWith(s, len, "καθεστωτοσ")
-        || endsWith(s, len, "καθεστωτων")))
+  private static final int R0_A = group("καθεστωτοσ", "καθεστωτων");
+  private static final int R0_B = group("γεγονοτοσ", "γεγονοτων");
+  private static final int R0_C = group("καθεστωτα");
+  private static final int R0_D = group("τατογιου", "τατογιων");
+  private static final int R0_E = group("γεγονοτα");
+  private static final int R0_F = group("καθεστωσ");
+  private static final int R0_G = group("σκαγιου", "σκαγιων", "κρεατοσ",
+      "κρεατων", "περατοσ", "περατων", "τερατοσ", "τερατων");
+  private static final int R0_H = group("τατογια");
+  private static final int R0_I = group("γεγονοσ");
+  private static final int R0_J = group("φαγιου", "φαγιων", "σογιου", "σογιων");
+  private static final int R0_K = group("σκαγια", "κρεατα", "περατα", "τερατα");
+  private static final int R0_L = group("φαγια", "σογια", "φωτοσ", "φωτων");
+  private static final int R0_M = group("κρεασ", "περασ", "τερασ");
+  private static final int R0_N = group("φωτα", "φωτο");
+  private static final int R0_O = group("φωσ");
+  private static final int R0_P = group("ευα");
+
+  private int rule0(char s[], int len, int node) {
+    if (len > 9 && SUFFIXES.matches(node, R0_A))
       return len - 4;
 
-    if (len > 8 && (endsWith(s, len, "γεγονοτοσ")
-        || endsWith(s, len, "γεγονοτων")))
+    if (len > 8 && SUFFIXES.matches(node, R0_B))
       return len - 4;
 
-    if (len > 8 && endsWith(s, len, "καθεστωτα"))
+    if (len > 8 && SUFFIXES.matches(node, R0_C))
       return len - 3;
 
-    if (len > 7 && (endsWith(s, len, "τατογιου")
-        || endsWith(s, len, "τατογιων")))
+    if (len > 7 && SUFFIXES.matches(node, R0_D))
       return len - 4;
 
-    if (len > 7 && endsWith(s, len, "γεγονοτα"))
+    if (len > 7 && SUFFIXES.matches(node, R0_E))
       return len - 3;
 
-    if (len > 7 && endsWith(s, len, "καθεστωσ"))
+    if (len > 7 && SUFFIXES.matches(node, R0_F))
       return len - 2;
 
-    if (len > 6 && (endsWith(s, len, "σκαγιου"))
-        || endsWith(s, len, "σκαγιων")
-        || endsWith(s, len, "κρεατοσ")
-        || endsWith(s, len, "κρεατων")
-        || endsWith(s, len, "περατοσ")
-        || endsWith(s, len, "περατων")
-        || endsWith(s, len, "τερατοσ")
-        || endsWith(s, len, "τερατων"))
+    if (len > 6 && SUFFIXES.matches(node, R0_G))
       return len - 4;
 
-    if (len > 6 && endsWith(s, len, "τατογια"))
+    if (len > 6 && SUFFIXES.matches(node, R0_H))
       return len - 3;
 
-    if (len > 6 && endsWith(s, len, "γεγονοσ"))
+    if (len > 6 && SUFFIXES.matches(node, R0_I))
       return len - 2;
 
-    if (len > 5 && (endsWith(s, len, "φαγιου")
-        || endsWith(s, len, "φαγιων")
-        || endsWith(s, len, "σογιου")
-        || endsWith(s, len, "σογιων")))
+    if (len > 5 && SUFFIXES.matches(node, R0_J))
       return len - 4;
 
-    if (len > 5 && (endsWith(s, len, "σκαγια")
-        || endsWith(s, len, "κρεατα")
-        || endsWith(s, len, "περατα")
-        || endsWith(s, len, "τερατα")))
+    if (len > 5 && SUFFIXES.matches(node, R0_K))
       return len - 3;
 
-    if (len > 4 && (endsWith(s, len, "φαγια")
-        || endsWith(s, len, "σογια")
-        || endsWith(s, len, "φωτοσ")
-        || endsWith(s, len, "φωτων")))
+    if (len > 4 && SUFFIXES.matches(node, R0_L))
       return len - 3;
 
-    if (len > 4 && (endsWith(s, len, "κρεασ")
-        || endsWith(s, len, "περασ")
-        || endsWith(s, len, "τερασ")))
+    if (len > 4 && SUFFIXES.matches(node, R0_M))
       return len - 2;
 
-    if (len > 3 && (endsWith(s, len, "φωτα") || endsWith(s, len, "φωτο")))
+    if (len > 3 && SUFFIXES.matches(node, R0_N))
       return len - 2;
 
-    if (len > 2 && endsWith(s, len, "φωσ"))
+    if (len > 2 && SUFFIXES.matches(node, R0_O))
       return len - 1;
 
-    if (len > 2 && endsWith(s, len, "ευα"))
+    if (len > 2 && SUFFIXES.matches(node, R0_P))
       return len - 1;
 
     return len;
   }
 
-  private int rule1(char s[], int len) {
-    if (len > 4 && (endsWith(s, len, "αδεσ") || endsWith(s, len, "αδων"))) {
+  private static final int R1 = group("αδεσ", "αδων");
+  private static final int R1_EXC = group("οκ", "μαμ", "μαν", "μπαμπ", "πατερ",
+      "γιαγι", "νταντ", "κυρ", "θει", "πεθερ", "μουσαμ", "παρ", "ψαρ", "τζουρ",
+      "ταμπουρ", "καπλαμ");
+
+  private int rule1(char s[], int len, int node) {
+    if (len > 4 && SUFFIXES.matches(node, R1)) {
       len -= 4;
-      if (!(endsWith(s, len, "οκ") ||
-          endsWith(s, len, "μαμ") ||
-          endsWith(s, len, "μαν") ||
-          endsWith(s, len, "μπαμπ") ||
-          endsWith(s, len, "πατερ") ||
-          endsWith(s, len, "γιαγι") ||
-          endsWith(s, len, "νταντ") ||
-          endsWith(s, len, "κυρ") ||
-          endsWith(s, len, "θει") ||
-          endsWith(s, len, "πεθερ") ||
-          endsWith(s, len, "μουσαμ") ||
-          endsWith(s, len, "παρ") ||
-          endsWith(s, len, "ψαρ") ||
-          endsWith(s, len, "τζουρ") ||
-          endsWith(s, len, "ταμπουρ") ||
-          endsWith(s, len, "καπλαμ")))
+      if (!SUFFIXES.matches(SUFFIXES.walk(s, len), R1_EXC))
         len += 2; // add back -αδ
     }
     return len;
   }
 
-  private int rule2(char s[], int len) {
-    if (len > 4 && (endsWith(s, len, "εδεσ") || endsWith(s, len, "εδων"))) {
+  private static final int R2 = group("εδεσ", "εδων");
+  private static final int R2_EXC = group("οπ", "ιπ", "εμπ", "υπ", "γηπ", "δαπ",
+      "κρασπ", "μιλ");
+
+  private int rule2(char s[], int len, int node) {
+    if (len > 4 && SUFFIXES.matches(node, R2)) {
       len -= 4;
-      if (endsWith(s, len, "οπ") ||
-          endsWith(s, len, "ιπ") ||
-          endsWith(s, len, "εμπ") ||
-          endsWith(s, len, "υπ") ||
-          endsWith(s, len, "γηπ") ||
-          endsWith(s, len, "δαπ") ||
-          endsWith(s, len, "κρασπ") ||
-          endsWith(s, len, "μιλ"))
+      if (SUFFIXES.matches(SUFFIXES.walk(s, len), R2_EXC))
         len += 2; // add back -εδ
     }
     return len;
   }
 
-  private int rule3(char s[], int len) {
-    if (len > 5 && (endsWith(s, len, "ουδεσ") || endsWith(s, len, "ουδων"))) {
+  private static final int R3 = group("ουδεσ", "ουδων");
+  private static final int R3_EXC = group("αρκ", "καλιακ", "πεταλ", "λιχ",
+      "πλεξ", "σκ", "σ", "φλ", "φρ", "βελ", "λουλ", "χν", "σπ", "τραγ", "φε");
+
+  private int rule3(char s[], int len, int node) {
+    if (len > 5 && SUFFIXES.matches(node, R3)) {
       len -= 5;
-      if (endsWith(s, len, "αρκ") ||
-          endsWith(s, len, "καλιακ") ||
-          endsWith(s, len, "πεταλ") ||
-          endsWith(s, len, "λιχ") ||
-          endsWith(s, len, "πλεξ") ||
-          endsWith(s, len, "σκ") ||
-          endsWith(s, len, "σ") ||
-          endsWith(s, len, "φλ") ||
-          endsWith(s, len, "φρ") ||
-          endsWith(s, len, "βελ") ||
-          endsWith(s, len, "λουλ") ||
-          endsWith(s, len, "χν") ||
-          endsWith(s, len, "σπ") ||
-          endsWith(s, len, "τραγ") ||
-          endsWith(s, len, "φε"))
+      if (SUFFIXES.matches(SUFFIXES.walk(s, len), R3_EXC))
         len += 3; // add back -ουδ
     }
     return len;
@@ -241,25 +340,24 @@ public class SkroutzGreekStemmer {
    * <p>
    * <i>παρεα - παρεασ - παρεεσ, στερεα - στερεασ - στερεεσ</i>
    */
-  private static final CharArraySet exc4 = new CharArraySet(
-      Arrays.asList("θ", "δ", "ελ", "γαλ", "ν", "π", "ιδ", "παρ", "στερ",
-          "ορφ", "ανδρ", "αντρ"),
-      false);
+  private static final int EXC4 = exceptions("θ", "δ", "ελ", "γαλ", "ν", "π",
+      "ιδ", "παρ", "στερ", "ορφ", "ανδρ", "αντρ");
+
+  private static final int R4_A = group("εωσ", "εων", "εασ");
+  private static final int R4_B = group("εα");
 
-  private int rule4(char s[], int len) {
+  private int rule4(char s[], int len, int node) {
     boolean removed = false;
 
-    if (len > 3 && (endsWith(s, len, "εωσ") ||
-                    endsWith(s, len, "εων") ||
-                    endsWith(s, len, "εασ"))) {
+    if (len > 3 && SUFFIXES.matches(node, R4_A)) {
       len -= 3;
       removed = true;
-    } else if (len > 2 && endsWith(s, len, "εα")) {
+    } else if (len > 2 && SUFFIXES.matches(node, R4_B)) {
       len -= 2;
       removed = true;
     }
 
-    if (removed && exc4.contains(s, 0, len)) {
+    if (removed && EXCEPTIONS.contains(EXC4, s, len)) {
       len += 1; // add back the "ε"
     }
     return len;
@@ -276,70 +374,75 @@ public class SkroutzGreekStemmer {
    * πατριος - πατρα, ποντος - ποντιος, σκορπω - σκορπιος, σπανιος - σπανος,
    * τιμή - τιμιος</i>
    */
-  private static final CharArraySet exc5 = new CharArraySet(
-      Arrays.asList("αγ", "αγγελ", "αγρ", "αερ", "αθλ", "ακουσ", "αξ", "ασ",
-          "β", "βιβλ", "βυτ", "γ", "γιαγ", "γων", "δ", "δαν", "δηλ", "δημ",
-          "δοκιμ", "ελ", "ζαχαρ", "ηλ", "ηπ", "ιδ", "ισκ", "ιστ", "ιον",  "ιων",
-          "κιμωλ", "κολον", "κορ", "κτηρ", "κυρ", "λαγ", "λογ", "μαγ", "μπαν",
-          "μπετον", "μπρ", "ναυτ", "νοτ", "οπαλ", "οξ", "ορ", "οσ", "παναγ",
-          "πατρ", "πηλ", "πην", "πλαισ", "ποντ", "ραδ", "ροδ", "σκ", "σκορπ",
-          "σουν", "σπαν", "σταδ", "συρ", "τηλ", "τιμ", "τοκ", "τοπ", "τροχ",
-          "χωρ", "φιλ", "φωτ", "χ", "χιλ", "χρωμ"),
-          false);
-
-  private int rule5a(char s[], int len) {
-    if (len > 7 && (endsWith(s, len, "ειο") ||
-                    endsWith(s, len, "εια"))) {
+  private static final int EXC5 = exceptions("αγ", "αγγελ", "αγρ", "αερ", "αθλ",
+      "ακουσ", "αξ", "ασ", "β", "βιβλ", "βυτ", "γ", "γιαγ", "γων", "δ", "δαν",
+      "δηλ", "δημ", "δοκιμ", "ελ", "ζαχαρ", "ηλ", "ηπ", "ιδ", "ισκ", "ιστ",
+      "ιον", "ιων", "κιμωλ", "κολον", "κορ", "κτηρ", "κυρ", "λαγ", "λογ", "μαγ",
+      "μπαν", "μπετον", "μπρ", "ναυτ", "νοτ", "οπαλ", "οξ", "ορ", "οσ", "παναγ",
+      "πατρ", "πηλ", "πην", "πλαισ", "ποντ", "ραδ", "ροδ", "σκ", "σκορπ",
+      "σουν", "σπαν", "σταδ", "συρ", "τηλ", "τιμ", "τοκ", "τοπ", "τροχ", "χωρ",
+      "φιλ", "φωτ", "χ", "χιλ", "χρωμ");
+
+  private static final int R5A_A = group("ειο", "εια");
+  private static final int R5A_B = group("ειοσ", "ειοι", "ειασ", "ειεσ", "ειου",
+      "ειων");
+  private static final int R5A_C = group("ειουσ");
+
+  private int rule5a(char s[], int len, int node) {
+    if (len > 7 && SUFFIXES.matches(node, R5A_A)) {
       len -= 3;
-    } else if (len > 8 && (endsWith(s, len, "ειοσ") ||
-                           endsWith(s, len, "ειοι") ||
-                           endsWith(s, len, "ειασ") ||
-                           endsWith(s, len, "ειεσ") ||
-                           endsWith(s, len, "ειου") ||
-                           endsWith(s, len, "ειων"))) {
+    } else if (len > 8 && SUFFIXES.matches(node, R5A_B)) {
       len -= 4;
-    } else if (len > 9 && (endsWith(s, len, "ειουσ"))) {
+    } else if (len > 9 && SUFFIXES.matches(node, R5A_C)) {
       len -= 5;
     }
 
     return len;
   }
 
-  private int rule5b(char s[], int len) {
+  private static final char[] prefix5a = "τετραδ".toCharArray();
+  private static final char[] prefix5b = "πανι".toCharArray();
+
+  private static final int R5B_IO = group("ιο", "ια");
+  private static final int R5B_B = group("ιασ", "ιεσ", "ιοσ", "ιου", "ιοι", "ιον",
+      "ιων");
+  private static final int R5B_C = group("ιουσ");
+  private static final int R5B_PAL = group("παλ");
+
+  /**
+   * Whether rule5b rewrote the -ιο/-ια of a token that ended at {@code node}
+   * to -αι, keeping its length; it may also have left it as it was.
+   */
+  private static boolean rewroteIo(char s[], int len, int node) {
+    return SUFFIXES.matches(node, R5B_IO) && s[len - 2] == 'α' && s[len - 1] == 'ι';
+  }
+
+  private int rule5b(char s[], int len, int node) {
     boolean removed = false;
-    if (len > 2 && (endsWith(s, len, "ιο") ||
-                    endsWith(s, len, "ια"))) {
-      if (String.valueOf(s).startsWith("τετραδ") ||
-          String.valueOf(s).startsWith("πανι")) {
+    if (len > 2 && SUFFIXES.matches(node, R5B_IO)) {
+      if (startsWith(s, len, prefix5a) || startsWith(s, len, prefix5b)) {
        len -= 1;
       } else {
         len -= 2;
       }
       removed = true;
-    } else if (len > 3 && (endsWith(s, len, "ιασ") ||
-                           endsWith(s, len, "ιεσ") ||
-                           endsWith(s, len, "ιοσ") ||
-                           endsWith(s, len, "ιου") ||
-                           endsWith(s, len, "ιοι") ||
-                           endsWith(s, len, "ιον") ||
-                           endsWith(s, len, "ιων"))) {
-      if (String.valueOf(s).startsWith("τετραδ") ||
-          String.valueOf(s).startsWith("πανι")) {
+    } else if (len > 3 && SUFFIXES.matches(node, R5B_B)) {
+      if (startsWith(s, len, prefix5a) || startsWith(s, len, prefix5b)) {
         return len - 2;
       }
       else {
         len -= 3;
       }
       removed = true;
-    } else if (len > 4 && (endsWith(s, len, "ιουσ"))) {
+    } else if (len > 4 && SUFFIXES.matches(node, R5B_C)) {
       len -= 4;
       removed = true;
     }
 
     if (removed) {                                    // like γιος -> γ
-      if (endsWithVowel(s, len) || exc5.contains(s, 0, len) || len < 2) {
+      if (endsWithVowel(s, len) || EXCEPTIONS.contains(EXC5, s, len) || len < 2) {
         len++;  // add back -ι
-      } else if (endsWith(s, len, "παλ")) {
+      } else if (SUFFIXES.matches(SUFFIXES.walk(s, len), R5B_PAL)) {
         // add -αι emoved > 4 chars so its safe)
         len += 2;
         s[len - 2] = 'α';
@@ -349,135 +452,131 @@ public class SkroutzGreekStemmer {
     return len;
   }
 
-  private static final CharArraySet exc6 = new CharArraySet(
-      Arrays.asList("αδ", "αλ", "αμαν", "αμερ", "αμμοχαλ", "ανηθ", "αντιδ",
-          "απλ", "αττ", "αφρ", "βασ", "βρωμ","βρωμ", "γεν", "γερ", "δ", "δικαν",
-          "διαφορ", "δυτ", "ειδ", "ενδ", "εξωδ", "ηθ", "θετ", "καλλιν", "καλπ",
-          "καταδ", "κουζιν", "κρ", "κωδ", "λαδ", "λογ",  "μ", "μερ", "μοναδ",
-          "μουλ", "μουσ", "μπαγιατ", "μπαν", "μπολ", "μποσ", "μυστ", "ν", "νιτ",
-          "ξικ", "οπτ", "παν", "περιστροφ", "πετσ", "πικαντ", "πιτσ", "πλαστ",
-          "πλιατσ", "ποντ", "ποστελν", "πρωτοδ", "σερτ", "σημαντ", "στατ",
-          "συναδ", "συνομηλ", "τελ", "τεχν", "τηλεσκοπ", "τροπ", "τσαμ", "υποδ",
-          "φ", "φιλον", "φυλοδ", "φυσ", "χασ", "φυτ"),
-          false);
-
-  private int rule6(char s[], int len) {
+  private static final int EXC6 = exceptions("αδ", "αλ", "αμαν", "αμερ",
+      "αμμοχαλ", "ανηθ", "αντιδ", "απλ", "αττ", "αφρ", "βασ", "βρωμ", "βρωμ",
+      "γεν", "γερ", "δ", "δικαν", "διαφορ", "δυτ", "ειδ", "ενδ", "εξωδ", "ηθ",
+      "θετ", "καλλιν", "καλπ", "καταδ", "κουζιν", "κρ", "κωδ", "λαδ", "λογ",
+      "μ", "μερ", "μοναδ", "μουλ", "μουσ", "μπαγιατ", "μπαν", "μπολ", "μποσ",
+      "μυστ", "ν", "νιτ", "ξικ", "οπτ", "παν", "περιστροφ", "πετσ", "πικαντ",
+      "πιτσ", "πλαστ", "πλιατσ", "ποντ", "ποστελν", "πρωτοδ", "σερτ", "σημαντ",
+      "στατ", "συναδ", "συνομηλ", "τελ", "τεχν", "τηλεσκοπ", "τροπ", "τσαμ",
+      "υποδ", "φ", "φιλον", "φυλοδ", "φυσ", "χασ", "φυτ");
+
+  private static final char[] prefix6 = "πασχαλιατ".toCharArray();
+
+  private static final int R6_A = group("ικα", "ικο", "ικη");
+  private static final int R6_B = group("ικου", "ικων", "ικωσ", "ικοσ", "ικον",
+      "ικοι", "ικησ", "ικεσ");
+  private static final int R6_C = group("ικουσ", "ικεισ");
+  private static final int R6_EXC = group("φοιν");
+
+  private int rule6(char s[], int len, int node) {
     boolean removed = false;
-    if (len > 3 && (endsWith(s, len, "ικα") ||
-                    endsWith(s, len, "ικο") ||
-                    endsWith(s, len, "ικη"))) {
+    if (len > 3 && SUFFIXES.matches(node, R6_A)) {
       len -= 3;
       removed = true;
-    } else if (len > 4 && (endsWith(s, len, "ικου") ||
-                           endsWith(s, len, "ικων") ||
-                           endsWith(s, len, "ικωσ") ||
-                           endsWith(s, len, "ικοσ") ||
-                           endsWith(s, len, "ικον") ||
-                           endsWith(s, len, "ικοι") ||
-                           endsWith(s, len, "ικησ") ||
-                           endsWith(s, len, "ικεσ"))) {
+    } else if (len > 4 && SUFFIXES.matches(node, R6_B)) {
       len -= 4;
       removed = true;
-    } else if (len > 5 && (endsWith(s, len, "ικουσ") ||
-                           endsWith(s, len, "ικεισ"))) {
+    } else if (len > 5 && SUFFIXES.matches(node, R6_C)) {
       len -= 5;
       removed = true;
     }
 
     if (removed) {
       if (endsWithVowel(s, len)    ||
-          exc6.contains(s, 0, len) ||
-          endsWith(s, len, "φοιν"))
+          EXCEPTIONS.contains(EXC6, s, len) ||
+          SUFFIXES.matches(SUFFIXES.walk(s, len), R6_EXC))
         len += 2; // add back -ικ
-      else if (String.valueOf(s).startsWith("πασχαλιατ"))
+      else if (startsWith(s, len, prefix6))
         len -= 4;
     }
     return len;
   }
 
-  private static final CharArraySet exc7 = new CharArraySet(
-      Arrays.asList("αναπ", "αποθ", "αποκ", "αποστ", "βουβ", "ξεθ", "ουλ",
-          "πεθ", "πικρ", "ποτ", "σιχ", "χ"),
-      false);
+  private static final int EXC7 = exceptions("αναπ", "αποθ", "αποκ", "αποστ",
+      "βουβ", "ξεθ", "ουλ", "πεθ", "πικρ", "ποτ", "σιχ", "χ");
+
+  private static final int R7_AGAME = group("αγαμε");
+  private static final int R7_A = group("ηθηκαμε");
+  private static final int R7_B = group("ουσαμε");
+  private static final int R7_C = group("αγαμε", "ησαμε", "ηκαμε");
+  private static final int R7_D = group("αμε");
 
-  private int rule7(char s[], int len) {
-    if (len == 5 && endsWith(s, len, "αγαμε"))
+  private int rule7(char s[], int len, int node) {
+    if (len == 5 && SUFFIXES.matches(node, R7_AGAME))
       return len - 1;
 
-    if (len > 7 && endsWith(s, len, "ηθηκαμε"))
-      len -= 7;
-    else if (len > 6 && endsWith(s, len, "ουσαμε"))
-      len -= 6;
-    else if (len > 5 && (endsWith(s, len, "αγαμε") ||
-             endsWith(s, len, "ησαμε") ||
-             endsWith(s, len, "ηκαμε")))
-      len -= 5;
+    if (len > 7 && SUFFIXES.matches(node, R7_A))
+      node = SUFFIXES.walk(s, len -= 7);
+    else if (len > 6 && SUFFIXES.matches(node, R7_B))
+      node = SUFFIXES.walk(s, len -= 6);
+    else if (len > 5 && SUFFIXES.matches(node, R7_C))
+      node = SUFFIXES.walk(s, len -= 5);
 
-    if (len > 3 && endsWith(s, len, "αμε")) {
+    if (len > 3 && SUFFIXES.matches(node, R7_D)) {
       len -= 3;
-      if (exc7.contains(s, 0, len))
+      if (EXCEPTIONS.contains(EXC7, s, len))
         len += 2; // add back -αμ
     }
 
     return len;
   }
 
-  private static final CharArraySet exc8a = new CharArraySet(
-      Arrays.asList("τρ", "τσ"),
-      false);
-
-  private static final CharArraySet exc8b = new CharArraySet(
-      Arrays.asList("βετερ", "βουλκ", "βραχμ", "γ", "δραδουμ", "θ", "καλπουζ",
-          "καστελ", "κορμορ", "λαοπλ", "μωαμεθ", "μ", "μουσουλμ", "ν", "ουλ",
-          "π", "πελεκ", "πλ", "πολισ", "πορτολ", "σαρακατσ", "σουλτ",
-          "τσαρλατ", "ορφ", "τσιγγ", "τσοπ", "φωτοστεφ", "χ", "ψυχοπλ", "αγ",
-          "ορφ", "γαλ", "γερ", "δεκ", "διπλ", "αμερικαν", "ουρ", "πιθ",
-          "πουριτ", "σ", "ζωντ", "ικ", "καστ", "κοπ", "λιχ", "λουθηρ", "μαιντ",
-          "μελ", "σιγ", "σπ", "στεγ", "τραγ", "τσαγ", "φ", "ερ", "αδαπ",
-          "αθιγγ", "αμηχ", "ανικ", "ανοργ", "απηγ", "απιθ", "ατσιγγ", "βασ",
-          "βασκ", "βαθυγαλ", "βιομηχ", "βραχυκ", "διατ", "διαφ", "ενοργ",
-          "θυσ", "καπνοβιομηχ", "καταγαλ", "κλιβ", "κοιλαρφ", "λιβ",
-          "μεγλοβιομηχ", "μικροβιομηχ", "νταβ", "ξηροκλιβ", "ολιγοδαμ",
-          "ολογαλ", "πενταρφ", "περηφ", "περιτρ", "πλατ", "πολυδαπ", "πολυμηχ",
-          "στεφ", "ταβ", "τετ", "υπερηφ", "υποκοπ", "χαμηλοδαπ", "ψηλοταβ"),
-      false);
-
-  private int rule8(char s[], int len) {
+  private static final int EXC8A = exceptions("τρ", "τσ");
+
+  private static final int EXC8B = exceptions("βετερ", "βουλκ", "βραχμ", "γ",
+      "δραδουμ", "θ", "καλπουζ", "καστελ", "κορμορ", "λαοπλ", "μωαμεθ", "μ",
+      "μουσουλμ", "ν", "ουλ", "π", "πελεκ", "πλ", "πολισ", "πορτολ", "σαρακατσ",
+      "σουλτ", "τσαρλατ", "ορφ", "τσιγγ", "τσοπ", "φωτοστεφ", "χ", "ψυχοπλ",
+      "αγ", "ορφ", "γαλ", "γερ", "δεκ", "διπλ", "αμερικαν", "ουρ", "πιθ",
+      "πουριτ", "σ", "ζωντ", "ικ", "καστ", "κοπ", "λιχ", "λουθηρ", "μαιντ",
+      "μελ", "σιγ", "σπ", "στεγ", "τραγ", "τσαγ", "φ", "ερ", "αδαπ", "αθιγγ",
+      "αμηχ", "ανικ", "ανοργ", "απηγ", "απιθ", "ατσιγγ", "βασ", "βασκ",
+      "βαθυγαλ", "βιομηχ", "βραχυκ", "διατ", "διαφ", "ενοργ", "θυσ",
+      "καπνοβιομηχ", "καταγαλ", "κλιβ", "κοιλαρφ", "λιβ", "μεγλοβιομηχ",
+      "μικροβιομηχ", "νταβ", "ξηροκλιβ", "ολιγοδαμ", "ολογαλ", "πενταρφ",
+      "περηφ", "περιτρ", "πλατ", "πολυδαπ", "πολυμηχ", "στεφ", "ταβ", "τετ",
+      "υπερηφ", "υποκοπ", "χαμηλοδαπ", "ψηλοταβ");
+
+  private static final int R8_A = group("ιουντανε");
+  private static final int R8_B = group("ιοντανε", "ουντανε", "ηθηκανε");
+  private static final int R8_C = group("ιοτανε", "οντανε", "ουσανε");
+  private static final int R8_D = group("αγανε", "ησανε", "οτανε", "ηκανε");
+  private static final int R8_E = group("ανε");
+
+  private int rule8(char s[], int len, int node) {
     boolean removed = false;
 
-    if (len > 8 && endsWith(s, len, "ιουντανε")) {
+    if (len > 8 && SUFFIXES.matches(node, R8_A)) {
       len -= 8;
       removed = true;
-    } else if (len > 7 && (endsWith(s, len, "ιοντανε") ||
-        endsWith(s, len, "ουντανε") ||
-        endsWith(s, len, "ηθηκανε"))) {
+    } else if (len > 7 && SUFFIXES.matches(node, R8_B)) {
       len -= 7;
       removed = true;
-    } else if (len > 6 && (endsWith(s, len, "ιοτανε") ||
-        endsWith(s, len, "οντανε") ||
-        endsWith(s, len, "ουσανε"))) {
+    } else if (len > 6 && SUFFIXES.matches(node, R8_C)) {
       len -= 6;
       removed = true;
-    } else if (len > 5 && (endsWith(s, len, "αγανε") ||
-        endsWith(s, len, "ησανε") ||
-        endsWith(s, len, "οτανε") ||
-        endsWith(s, len, "ηκανε"))) {
+    } else if (len > 5 && SUFFIXES.matches(node, R8_D)) {
       len -= 5;
       removed = true;
     }
 
-    if (removed && exc8a.contains(s, 0, len)) {
-      // add -αγαν (we removed > 4 chars so its safe)
-      len += 4;
-      s[len - 4] = 'α';
-      s[len - 3] = 'γ';
-      s[len - 2] = 'α';
-      s[len - 1] = 'ν';
+    if (removed) {
+      if (EXCEPTIONS.contains(EXC8A, s, len)) {
+        // add -αγαν (we removed > 4 chars so its safe)
+        len += 4;
+        s[len - 4] = 'α';
+        s[len - 3] = 'γ';
+        s[len - 2] = 'α';
+        s[len - 1] = 'ν';
+      }
+      node = SUFFIXES.walk(s, len);
     }
 
-    if (len > 3 && endsWith(s, len, "ανε")) {
+    if (len > 3 && SUFFIXES.matches(node, R8_E)) {
       len -= 3;
-      if (endsWithVowelNoY(s, len) || exc8b.contains(s, 0, len)) {
+      if (endsWithVowelNoY(s, len) || EXCEPTIONS.contains(EXC8B, s, len)) {
         len += 2; // add back -αν
       }
     }
@@ -485,51 +584,26 @@ public class SkroutzGreekStemmer {
     return len;
   }
 
-  private static final CharArraySet exc9 = new CharArraySet(
-      Arrays.asList("αβαρ", "βεν", "εναρ", "αβρ", "αδ", "αθ", "αν", "απλ",
-          "βαρον", "ντρ", "σκ", "κοπ", "μπορ", "νιφ", "παγ", "παρακαλ", "σερπ",
-          "σκελ", "συρφ", "τοκ", "υ", "δ", "εμ", "θαρρ", "θ"),
-      false);
+  private static final int EXC9 = exceptions("αβαρ", "βεν", "εναρ", "αβρ", "αδ",
+      "αθ", "αν", "απλ", "βαρον", "ντρ", "σκ", "κοπ", "μπορ", "νιφ", "παγ",
+      "παρακαλ", "σερπ", "σκελ", "συρφ", "τοκ", "υ", "δ", "εμ", "θαρρ", "θ");
 
-  private int rule9(char s[], int len) {
-    if (len > 5 && endsWith(s, len, "ησετε"))
-      len -= 5;
+  private static final int R9_A = group("ησετε");
+  private static final int R9_B = group("ετε");
+  private static final int R9_EXC = group("οδ", "αιρ", "φορ", "ταθ", "διαθ", "σχ",
+      "ενδ", "ευρ", "τιθ", "υπερθ", "ραθ", "ενθ", "ροθ", "σθ", "πυρ", "αιν",
+      "συνδ", "συν", "συνθ", "χωρ", "πον", "βρ", "καθ", "ευθ", "εκθ", "νετ",
+      "ρον", "αρκ", "βαρ", "βολ", "ωφελ");
+
+  private int rule9(char s[], int len, int node) {
+    if (len > 5 && SUFFIXES.matches(node, R9_A))
+      node = SUFFIXES.walk(s, len -= 5);
 
-    if (len > 3 && endsWith(s, len, "ετε")) {
+    if (len > 3 && SUFFIXES.matches(node, R9_B)) {
       len -= 3;
-      if (exc9.contains(s, 0, len) ||
+      if (EXCEPTIONS.contains(EXC9, s, len) ||
           endsWithVowelNoY(s, len) ||
-          endsWith(s, len, "οδ") ||
-          endsWith(s, len, "αιρ") ||
-          endsWith(s, len, "φορ") ||
-          endsWith(s, len, "ταθ") ||
-          endsWith(s, len, "διαθ") ||
-          endsWith(s, len, "σχ") ||
-          endsWith(s, len, "ενδ") ||
-          endsWith(s, len, "ευρ") ||
-          endsWith(s, len, "τιθ") ||
-          endsWith(s, len, "υπερθ") ||
-          endsWith(s, len, "ραθ") ||
-          endsWith(s, len, "ενθ") ||
-          endsWith(s, len, "ροθ") ||
-          endsWith(s, len, "σθ") ||
-          endsWith(s, len, "πυρ") ||
-          endsWith(s, len, "αιν") ||
-          endsWith(s, len, "συνδ") ||
-          endsWith(s, len, "συν") ||
-          endsWith(s, len, "συνθ") ||
-          endsWith(s, len, "χωρ") ||
-          endsWith(s, len, "πον") ||
-          endsWith(s, len, "βρ") ||
-          endsWith(s, len, "καθ") ||
-          endsWith(s, len, "ευθ") ||
-          endsWith(s, len, "εκθ") ||
-          endsWith(s, len, "νετ") ||
-          endsWith(s, len, "ρον") ||
-          endsWith(s, len, "αρκ") ||
-          endsWith(s, len, "βαρ") ||
-          endsWith(s, len, "βολ") ||
-          endsWith(s, len, "ωφελ")) {
+          SUFFIXES.matches(SUFFIXES.walk(s, len), R9_EXC)) {
         len += 2; // add back -ετ
       }
     }
@@ -537,14 +611,19 @@ public class SkroutzGreekStemmer {
     return len;
   }
 
-  private int rule10(char s[], int len) {
-    if (len > 5 && (endsWith(s, len, "οντασ") || endsWith(s, len, "ωντασ"))) {
+  private static final int R10 = group("οντασ", "ωντασ");
+  private static final int R10_ARX = group("αρχ");
+  private static final int R10_KRE = group("κρε");
+
+  private int rule10(char s[], int len, int node) {
+    if (len > 5 && SUFFIXES.matches(node, R10)) {
       len -= 5;
-      if (len == 3 && endsWith(s, len, "αρχ")) {
+      node = SUFFIXES.walk(s, len);
+      if (len == 3 && SUFFIXES.matches(node, R10_ARX)) {
         len += 3; // add back *ντ
         s[len - 3] = 'ο';
-      }
-      if (endsWith(s, len, "κρε")) {
+      } else if (SUFFIXES.matches(node, R10_KRE)) {
+        // an "αρχ" stem that got -οντ back can never end in "κρε"
         len += 3; // add back *ντ
         s[len - 3] = 'ω';
       }
@@ -553,15 +632,19 @@ public class SkroutzGreekStemmer {
     return len;
   }
 
-  private int rule11(char s[], int len) {
-    if (len > 6 && endsWith(s, len, "ομαστε")) {
+  private static final int R11_A = group("ομαστε");
+  private static final int R11_B = group("ιομαστε");
+  private static final int R11_ON = group("ον");
+
+  private int rule11(char s[], int len, int node) {
+    if (len > 6 && SUFFIXES.matches(node, R11_A)) {
       len -= 6;
-      if (len == 2 && endsWith(s, len, "ον")) {
+      if (len == 2 && SUFFIXES.matches(SUFFIXES.walk(s, len), R11_ON)) {
         len += 5; // add back -ομαστ
       }
-    } else if (len > 7 && endsWith(s, len, "ιομαστε")) {
+    } else if (len > 7 && SUFFIXES.matches(node, R11_B)) {
       len -= 7;
-      if (len == 2 && endsWith(s, len, "ον")) {
+      if (len == 2 && SUFFIXES.matches(SUFFIXES.walk(s, len), R11_ON)) {
         len += 5;
         s[len - 5] = 'ο';
         s[len - 4] = 'μ';
@@ -573,140 +656,129 @@ public class SkroutzGreekStemmer {
     return len;
   }
 
-  private static final CharArraySet exc12a = new CharArraySet(
-      Arrays.asList("π", "απ", "συμπ", "ασυμπ", "ακαταπ", "αμεταμφ"),
-      false);
+  private static final int EXC12A = exceptions("π", "απ", "συμπ", "ασυμπ",
+      "ακαταπ", "αμεταμφ");
+
+  private static final int EXC12B = exceptions("αλ", "αρ", "εκτελ", "ζ", "μ",
+      "ξ", "παρακαλ", "αρ", "προ", "νισ");
 
-  private static final CharArraySet exc12b = new CharArraySet(
-      Arrays.asList("αλ", "αρ", "εκτελ", "ζ", "μ", "ξ", "παρακαλ", "αρ", "προ", "νισ"),
-      false);
+  private static final int R12_A = group("ιεστε");
+  private static final int R12_B = group("εστε");
 
-  private int rule12(char s[], int len) {
-    if (len > 5 && endsWith(s, len, "ιεστε")) {
+  private int rule12(char s[], int len, int node) {
+    if (len > 5 && SUFFIXES.matches(node, R12_A)) {
       len -= 5;
-      if (exc12a.contains(s, 0, len))
+      if (EXCEPTIONS.contains(EXC12A, s, len))
         len += 4; // add back -ιεστ
+      node = SUFFIXES.walk(s, len);
     }
 
-    if (len > 4 && endsWith(s, len, "εστε")) {
+    if (len > 4 && SUFFIXES.matches(node, R12_B)) {
       len -= 4;
-      if (exc12b.contains(s, 0, len))
+      if (EXCEPTIONS.contains(EXC12B, s, len))
         len += 3; // add back -εστ
     }
 
     return len;
   }
 
-  private static final CharArraySet exc13 = new CharArraySet(
-      Arrays.asList("διαθ", "θ", "παρακαταθ", "προσθ", "συνθ"),
-      false);
-
-  private int rule13(char s[], int len) {
-    if (len > 6 && endsWith(s, len, "ηθηκεσ")) {
-      len -= 6;
-    } else if (len > 5 && (endsWith(s, len, "ηθηκα") || endsWith(s, len, "ηθηκε"))) {
-      len -= 5;
+  private static final int EXC13 = exceptions("διαθ", "θ", "παρακαταθ", "προσθ",
+      "συνθ");
+
+  private static final int R13_A = group("ηθηκεσ");
+  private static final int R13_B = group("ηθηκα", "ηθηκε");
+  private static final int R13_C = group("ηκεσ");
+  private static final int R13_D = group("ηκα", "ηκε");
+  private static final int R13_EXC = group("σκωλ", "σκουλ", "ναρθ", "σφ", "οθ",
+      "πιθ");
+
+  private int rule13(char s[], int len, int node) {
+    if (len > 6 && SUFFIXES.matches(node, R13_A)) {
+      node = SUFFIXES.walk(s, len -= 6);
+    } else if (len > 5 && SUFFIXES.matches(node, R13_B)) {
+      node = SUFFIXES.walk(s, len -= 5);
     }
 
     boolean removed = false;
 
-    if (len > 4 && endsWith(s, len, "ηκεσ")) {
+    if (len > 4 && SUFFIXES.matches(node, R13_C)) {
       len -= 4;
       removed = true;
-    } else if (len > 3 && (endsWith(s, len, "ηκα") || endsWith(s, len, "ηκε"))) {
+    } else if (len > 3 && SUFFIXES.matches(node, R13_D)) {
       len -= 3;
       removed = true;
     }
 
-    if (removed && (exc13.contains(s, 0, len)
-        || endsWith(s, len, "σκωλ")
-        || endsWith(s, len, "σκουλ")
-        || endsWith(s, len, "ναρθ")
-        || endsWith(s, len, "σφ")
-        || endsWith(s, len, "οθ")
-        || endsWith(s, len, "πιθ"))) {
+    if (removed && (EXCEPTIONS.contains(EXC13, s, len)
+        || SUFFIXES.matches(SUFFIXES.walk(s, len), R13_EXC))) {
       len += 2; // add back the -ηκ
     }
 
     return len;
   }
 
-  private static final CharArraySet exc14 = new CharArraySet(
-      Arrays.asList("φαρμακ", "χαδ", "αγκ", "αναρρ", "βρομ", "εκλιπ", "λαμπιδ",
-          "λεχ", "μ", "πατ", "ρ", "λ", "μεδ", "μεσαζ", "υποτειν", "αμ", "αιθ",
-          "ανηκ", "δεσποζ", "ενδιαφερ", "δε", "δευτερευ", "καθαρευ", "πλε",
-          "τσα"),
-      false);
+  private static final int EXC14 = exceptions("φαρμακ", "χαδ", "αγκ", "αναρρ",
+      "βρομ", "εκλιπ", "λαμπιδ", "λεχ", "μ", "πατ", "ρ", "λ", "μεδ", "μεσαζ",
+      "υποτειν", "αμ", "αιθ", "ανηκ", "δεσποζ", "ενδιαφερ", "δε", "δευτερευ",
+      "καθαρευ", "πλε", "τσα");
 
-  private int rule14(char s[], int len) {
+  private static final int R14_A = group("ουσεσ");
+  private static final int R14_B = group("ουσα", "ουσε");
+  private static final int R14_EXC = group("ποδαρ", "βλεπ", "πανταχ", "φρυδ",
+      "μαντιλ", "μαλλ", "κυματ", "λαχ", "ληγ", "φαγ", "ομ", "πρωτ");
+
+  private int rule14(char s[], int len, int node) {
     boolean removed = false;
 
-    if (len > 5 && endsWith(s, len, "ουσεσ")) {
+    if (len > 5 && SUFFIXES.matches(node, R14_A)) {
       len -= 5;
       removed = true;
-    } else if (len > 4 && (endsWith(s, len, "ουσα") || endsWith(s, len, "ουσε"))) {
+    } else if (len > 4 && SUFFIXES.matches(node, R14_B)) {
       len -= 4;
       removed = true;
     }
 
-    if (removed && (exc14.contains(s, 0, len)
+    if (removed && (EXCEPTIONS.contains(EXC14, s, len)
         || endsWithVowel(s, len)
-        || endsWith(s, len, "ποδαρ")
-        || endsWith(s, len, "βλεπ")
-        || endsWith(s, len, "πανταχ")
-        || endsWith(s, len, "φρυδ")
-        || endsWith(s, len, "μαντιλ")
-        || endsWith(s, len, "μαλλ")
-        || endsWith(s, len, "κυματ")
-        || endsWith(s, len, "λαχ")
-        || endsWith(s, len, "ληγ")
-        || endsWith(s, len, "φαγ")
-        || endsWith(s, len, "ομ")
-        || endsWith(s, len, "πρωτ"))) {
+        || SUFFIXES.matches(SUFFIXES.walk(s, len), R14_EXC))) {
       len += 3; // add back -ουσ
     }
 
    return len;
   }
 
-  private static final CharArraySet exc15a = new CharArraySet(
-      Arrays.asList("αβαστ", "πολυφ", "αδηφ", "παμφ", "ρ", "ασπ", "αφ", "αμαλ",
-          "αμαλλι", "ανυστ", "απερ", "ασπαρ", "αχαρ", "δερβεν", "δροσοπ",
-          "ξεφ", "νεοπ", "νομοτ", "ολοπ", "ομοτ", "προστ", "προσωποπ", "συμπ",
-          "συντ", "τ", "υποτ", "χαρ", "αειπ", "αιμοστ", "ανυπ", "αποτ",
-          "αρτιπ", "διατ", "εν", "επιτ", "κροκαλοπ", "σιδηροπ", "λ", "ναυ",
-          "ουλαμ", "ουρ", "π", "τρ", "μ"),
-      false);
+  private static final int EXC15A = exceptions("αβαστ", "πολυφ", "αδηφ", "παμφ",
+      "ρ", "ασπ", "αφ", "αμαλ", "αμαλλι", "ανυστ", "απερ", "ασπαρ", "αχαρ",
+      "δερβεν", "δροσοπ", "ξεφ", "νεοπ", "νομοτ", "ολοπ", "ομοτ", "προστ",
+      "προσωποπ", "συμπ", "συντ", "τ", "υποτ", "χαρ", "αειπ", "αιμοστ", "ανυπ",
+      "αποτ", "αρτιπ", "διατ", "εν", "επιτ", "κροκαλοπ", "σιδηροπ", "λ", "ναυ",
+      "ουλαμ", "ουρ", "π", "τρ", "μ");
+
+  private static final int EXC15B = exceptions("ψοφ", "ναυλοχ");
 
-  private static final CharArraySet exc15b = new CharArraySet(
-      Arrays.asList("ψοφ", "ναυλοχ"),
-      false);
+  private static final int R15_A = group("αγεσ");
+  private static final int R15_B = group("αγα", "αγε");
+  private static final int R15_EXC_A = group("οφ", "πελ", "χορτ", "λλ", "σφ", "ρπ",
+      "φρ", "πρ", "λοχ", "σμην");
+  private static final int R15_EXC_B = group("κολλ");
 
-  private int rule15(char s[], int len) {
+  private int rule15(char s[], int len, int node) {
     boolean removed = false;
-    if (len > 4 && endsWith(s, len, "αγεσ")) {
+    if (len > 4 && SUFFIXES.matches(node, R15_A)) {
       len -= 4;
       removed = true;
-    } else if (len > 3 && (endsWith(s, len, "αγα") || endsWith(s, len, "αγε"))) {
+    } else if (len > 3 && SUFFIXES.matches(node, R15_B)) {
       len -= 3;
       removed = true;
     }
 
     if (removed) {
-      final boolean cond1 = exc15a.contains(s, 0, len)
-        || endsWith(s, len, "οφ")
-        || endsWith(s, len, "πελ")
-        || endsWith(s, len, "χορτ")
-        || endsWith(s, len, "λλ")
-        || endsWith(s, len, "σφ")
-        || endsWith(s, len, "ρπ")
-        || endsWith(s, len, "φρ")
-        || endsWith(s, len, "πρ")
-        || endsWith(s, len, "λοχ")
-        || endsWith(s, len, "σμην");
-
-      final boolean cond2 = exc15b.contains(s, 0, len)
-        || endsWith(s, len, "κολλ");
+      node = SUFFIXES.walk(s, len);
+      final boolean cond1 = EXCEPTIONS.contains(EXC15A, s, len)
+        || SUFFIXES.matches(node, R15_EXC_A);
+
+      final boolean cond2 = EXCEPTIONS.contains(EXC15B, s, len)
+        || SUFFIXES.matches(node, R15_EXC_B);
 
       if (cond1 && !cond2)
         len += 2; // add back -αγ
@@ -715,56 +787,61 @@ public class SkroutzGreekStemmer {
     return len;
   }
 
-  private static final CharArraySet exc16 = new CharArraySet(
-      Arrays.asList("ν", "χερσον", "δωδεκαν", "ερημον", "μεγαλον", "επταν", "ι"),
-      false);
+  private static final int EXC16 = exceptions("ν", "χερσον", "δωδεκαν",
+      "ερημον", "μεγαλον", "επταν", "ι");
+
+  private static final int R16_A = group("ησου");
+  private static final int R16_B = group("ησε", "ησα");
 
-  private int rule16(char s[], int len) {
+  private int rule16(char s[], int len, int node) {
     boolean removed = false;
-    if (len > 4 && endsWith(s, len, "ησου")) {
+    if (len > 4 && SUFFIXES.matches(node, R16_A)) {
       len -= 4;
       removed = true;
-    } else if (len > 3 && (endsWith(s, len, "ησε") || endsWith(s, len, "ησα"))) {
+    } else if (len > 3 && SUFFIXES.matches(node, R16_B)) {
       len -= 3;
       removed = true;
     }
 
-    if (removed && exc16.contains(s, 0, len))
+    if (removed && EXCEPTIONS.contains(EXC16, s, len))
       len += 2; // add back -ησ
 
     return len;
   }
 
-  private static final CharArraySet exc17 = new CharArraySet(
-      Arrays.asList("ασβ", "σβ", "αχρ", "χρ", "απλ", "αειμν", "δυσχρ", "ευχρ", "κοινοχρ", "παλιμψ"),
-      false);
+  private static final int EXC17 = exceptions("ασβ", "σβ", "αχρ", "χρ", "απλ",
+      "αειμν", "δυσχρ", "ευχρ", "κοινοχρ", "παλιμψ");
 
-  private int rule17(char s[], int len) {
-    if (len > 4 && endsWith(s, len, "ηστε")) {
+  private static final int R17 = group("ηστε");
+
+  private int rule17(char s[], int len, int node) {
+    if (len > 4 && SUFFIXES.matches(node, R17)) {
       len -= 4;
-      if (exc17.contains(s, 0, len))
+      if (EXCEPTIONS.contains(EXC17, s, len))
         len += 3; // add back the -ηστ
     }
 
     return len;
   }
 
-  private static final CharArraySet exc18 = new CharArraySet(
-      Arrays.asList("ν", "ρ", "σπι", "στραβομουτσ", "κακομουτσ", "εξων"),
-      false);
+  private static final int EXC18 = exceptions("ν", "ρ", "σπι", "στραβομουτσ",
+      "κακομουτσ", "εξων");
+
+  private static final int R18_A = group("ησουνε", "ηθουνε");
+  private static final int R18_B = group("ουνε");
 
-  private int rule18(char s[], int len) {
+  private int rule18(char s[], int len, int node) {
     boolean removed = false;
 
-    if (len > 6 && (endsWith(s, len, "ησουνε") || endsWith(s, len, "ηθουνε"))) {
+    if (len > 6 && SUFFIXES.matches(node, R18_A)) {
       len -= 6;
       removed = true;
-    } else if (len > 4 && endsWith(s, len, "ουνε")) {
+    } else if (len > 4 && SUFFIXES.matches(node, R18_B)) {
       len -= 4;
       removed = true;
     }
 
-    if (removed && exc18.contains(s, 0, len)) {
+    if (removed && EXCEPTIONS.contains(EXC18, s, len)) {
       len += 3;
       s[len - 3] = 'ο';
       s[len - 2] = 'υ';
@@ -773,22 +850,24 @@ public class SkroutzGreekStemmer {
     return len;
   }
 
-  private static final CharArraySet exc19 = new CharArraySet(
-      Arrays.asList("παρασουσ", "φ", "χ", "ωριοπλ", "αζ", "αλλοσουσ", "ασουσ"),
-      false);
+  private static final int EXC19 = exceptions("παρασουσ", "φ", "χ", "ωριοπλ",
+      "αζ", "αλλοσουσ", "ασουσ");
+
+  private static final int R19_A = group("ησουμε", "ηθουμε");
+  private static final int R19_B = group("ουμε");
 
-  private int rule19(char s[], int len) {
+  private int rule19(char s[], int len, int node) {
     boolean removed = false;
 
-    if (len > 6 && (endsWith(s, len, "ησουμε") || endsWith(s, len, "ηθουμε"))) {
+    if (len > 6 && SUFFIXES.matches(node, R19_A)) {
       len -= 6;
       removed = true;
-    } else if (len > 4 && endsWith(s, len, "ουμε")) {
+    } else if (len > 4 && SUFFIXES.matches(node, R19_B)) {
       len -= 4;
       removed = true;
     }
 
-    if (removed && exc19.contains(s, 0, len)) {
+    if (removed && EXCEPTIONS.contains(EXC19, s, len)) {
       len += 3;
       s[len - 3] = 'ο';
       s[len - 2] = 'υ';
@@ -797,175 +876,127 @@ public class SkroutzGreekStemmer {
     return len;
   }
 
-  private static final CharArraySet exc20a = new CharArraySet(
-      Arrays.asList("γραμμ"), false);
+  private static final int EXC20A = exceptions("γραμμ");
 
-  private static final CharArraySet exc20b = new CharArraySet(
-      Arrays.asList("γεμ", "σταμ"), false);
+  private static final int EXC20B = exceptions("γεμ", "σταμ");
 
+  private static final int R20_A = group("ματουσ");
+  private static final int R20_B = group("ματων", "ματοσ", "ματωσ", "ματου",
+      "ματησ", "ματεσ", "ματοι");
+  private static final int R20_C = group("ματα", "ματο", "ματη");
 
-  private int rule20(char s[], int len) {
+  private int rule20(char s[], int len, int node) {
     boolean removed = false;
-    if (len > 6 && endsWith(s, len, "ματουσ")) {
+    if (len > 6 && SUFFIXES.matches(node, R20_A)) {
       len -= 5;
       removed = true;
-    } else if (len > 5 && (endsWith(s, len, "ματων") ||
-        endsWith(s, len, "ματοσ") ||
-        endsWith(s, len, "ματωσ") ||
-        endsWith(s, len, "ματου") ||
-        endsWith(s, len, "ματησ") ||
-        endsWith(s, len, "ματεσ") ||
-        endsWith(s, len, "ματοι"))) {
+    } else if (len > 5 && SUFFIXES.matches(node, R20_B)) {
       len -= 4;
       removed = true;
-    } else if (len > 4 && (endsWith(s, len, "ματα") ||
-        endsWith(s, len, "ματο") ||
-        endsWith(s, len, "ματη"))) {
+    } else if (len > 4 && SUFFIXES.matches(node, R20_C)) {
       len -= 3;
       removed = true;
     }
 
     if (removed)
-      if (exc20a.contains(s, 0, len)) {
+      if (EXCEPTIONS.contains(EXC20A, s, len)) {
       // add -α
       len += 1;
       s[len - 1] = 'α';
-    } else if (exc20b.contains(s, 0, len)) {
+    } else if (EXCEPTIONS.contains(EXC20B, s, len)) {
       len += 2; // add -ατ
     }
 
     return len;
   }
 
-  private int rule21(char s[], int len) {
-    if (len > 3 && endsWith(s, len, "ουα"))
+  private static final int R21 = group("ουα");
+
+  private int rule21(char s[], int len, int node) {
+    if (len > 3 && SUFFIXES.matches(node, R21))
       return len - 1;
 
     return len;
   }
 
-  private int rule22(char s[], int len) {
-    if (len > 9 && endsWith(s, len, "ιοντουσαν"))
+  private static final char[] prefix22a = "σπορ".toCharArray();
+  private static final char[] prefix22b = "ντουλαπ".toCharArray();
+  private static final char[] prefix22c = "πασχαλιν".toCharArray();
+
+  private static final int EXC22A = exceptions("χαρτησ", "χαρτων", "χαρτεσ");
+
+  private static final int EXC22B = exceptions("πασχα");
+
+  private static final int R22_A = group("ιοντουσαν");
+  private static final int R22_B = group("ιομασταν", "ιοσασταν", "ιουμαστε",
+      "οντουσαν");
+  private static final int R22_C = group("ιεμαστε", "ιεσαστε", "ιομουνα",
+      "ιοσαστε", "ιοσουνα", "ιουνται", "ιουνταν", "ηθηκατε", "ομασταν",
+      "οσασταν", "ουμαστε");
+  private static final int R22_D = group("ιομουν", "ιονταν", "ιοσουν", "ηθειτε",
+      "ηθηκαν", "ομουνα", "οσαστε", "οσουνα", "ουνται", "ουνταν", "ουσατε");
+  private static final int R22_E = group("αγατε", "ιεμαι", "ιεται", "ιεσαι",
+      "ιοταν", "ιουμα", "ηθεισ", "ηθουν", "ηκατε", "ησατε", "ησουν", "ομουν",
+      "ονται", "ονταν", "οσουν", "ουμαι", "ουσαν");
+  private static final int R22_F = group("αγαν", "αμαι", "ασαι", "αται", "ειτε",
+      "εσαι", "εται", "ηδεσ", "ηδων", "ηθει", "ηκαν", "ησαν", "ησει", "ησεσ",
+      "ομαι", "οταν");
+  private static final int R22_G = group("αει", "εισ", "ηθω", "ησω", "ουν", "οισ",
+      "ουσ");
+  private static final int R22_H = group("αν", "ασ", "αω", "ει", "εσ", "ησ", "οι",
+      "οσ", "ου", "υα", "υσ", "ων");
+  /** the endings of exc22a are in R22_H, so these are all that rule22 needs */
+  private static final int R22_VOWEL = group("α", "ε", "η", "ι", "ο", "υ", "ω");
+
+  private int rule22(char s[], int len, int node) {
+    if (len > 9 && SUFFIXES.matches(node, R22_A))
       return len - 9;
 
-    if (len > 8 && (endsWith(s, len, "ιομασταν") ||
-        endsWith(s, len, "ιοσασταν") ||
-        endsWith(s, len, "ιουμαστε") ||
-        endsWith(s, len, "οντουσαν")))
+    if (len > 8 && SUFFIXES.matches(node, R22_B))
       return len - 8;
 
-    if (len > 7 && (endsWith(s, len, "ιεμαστε") ||
-        endsWith(s, len, "ιεσαστε") ||
-        endsWith(s, len, "ιομουνα") ||
-        endsWith(s, len, "ιοσαστε") ||
-        endsWith(s, len, "ιοσουνα") ||
-        endsWith(s, len, "ιουνται") ||
-        endsWith(s, len, "ιουνταν") ||
-        endsWith(s, len, "ηθηκατε") ||
-        endsWith(s, len, "ομασταν") ||
-        endsWith(s, len, "οσασταν") ||
-        endsWith(s, len, "ουμαστε")))
+    if (len > 7 && SUFFIXES.matches(node, R22_C))
       return len - 7;
 
-    if (len > 6 && (endsWith(s, len, "ιομουν") ||
-        endsWith(s, len, "ιονταν") ||
-        endsWith(s, len, "ιοσουν") ||
-        endsWith(s, len, "ηθειτε") ||
-        endsWith(s, len, "ηθηκαν") ||
-        endsWith(s, len, "ομουνα") ||
-        endsWith(s, len, "οσαστε") ||
-        endsWith(s, len, "οσουνα") ||
-        endsWith(s, len, "ουνται") ||
-        endsWith(s, len, "ουνταν") ||
-        endsWith(s, len, "ουσατε")))
+    if (len > 6 && SUFFIXES.matches(node, R22_D))
       return len - 6;
 
-    if (len > 5 && (endsWith(s, len, "αγατε") ||
-        endsWith(s, len, "ιεμαι") ||
-        endsWith(s, len, "ιεται") ||
-        endsWith(s, len, "ιεσαι") ||
-        endsWith(s, len, "ιοταν") ||
-        endsWith(s, len, "ιουμα") ||
-        endsWith(s, len, "ηθεισ") ||
-        endsWith(s, len, "ηθουν") ||
-        endsWith(s, len, "ηκατε") ||
-        endsWith(s, len, "ησατε") ||
-        endsWith(s, len, "ησουν") ||
-        endsWith(s, len, "ομουν") ||
-        endsWith(s, len, "ονται") ||
-        endsWith(s, len, "ονταν") ||
-        endsWith(s, len, "οσουν") ||
-        endsWith(s, len, "ουμαι") ||
-        endsWith(s, len, "ουσαν")))
+    if (len > 5 && SUFFIXES.matches(node, R22_E))
       return len - 5;
 
-    if (len > 4 && (endsWith(s, len, "αγαν") ||
-        endsWith(s, len, "αμαι") ||
-        endsWith(s, len, "ασαι") ||
-        endsWith(s, len, "αται") ||
-        endsWith(s, len, "ειτε") ||
-        endsWith(s, len, "εσαι") ||
-        endsWith(s, len, "εται") ||
-        endsWith(s, len, "ηδεσ") ||
-        endsWith(s, len, "ηδων") ||
-        endsWith(s, len, "ηθει") ||
-        endsWith(s, len, "ηκαν") ||
-        endsWith(s, len, "ησαν") ||
-        endsWith(s, len, "ησει") ||
-        endsWith(s, len, "ησεσ") ||
-        endsWith(s, len, "ομαι") ||
-        endsWith(s, len, "οταν")))
+    if (len > 4 && SUFFIXES.matches(node, R22_F))
       return len - 4;
 
-    if (len > 3 && (endsWith(s, len, "αει") ||
-        endsWith(s, len, "εισ") ||
-        endsWith(s, len, "ηθω") ||
-        endsWith(s, len, "ησω") ||
-        endsWith(s, len, "ουν") ||
-        endsWith(s, len, "οισ") ||
-        endsWith(s, len, "ουσ"))) {
-      if(String.valueOf(s).startsWith("σπορ")) {
+    if (len > 3 && SUFFIXES.matches(node, R22_G)) {
+      if (startsWith(s, len, prefix22a)) {
         return len - 2;
       } else {
         return len - 3;
       }
     }
-    if(String.valueOf(s).equals("χαρτησ") ||
-            String.valueOf(s).equals("χαρτων") ||
-            String.valueOf(s).equals("χαρτεσ")) {
+    if (EXCEPTIONS.contains(EXC22A, s, len)) {
       s[len - 2] = 'η';
       return len - 1;
     }
-    if (len > 2 && (endsWith(s, len, "αν") ||
-        endsWith(s, len, "ασ") ||
-        endsWith(s, len, "αω") ||
-        endsWith(s, len, "ει") ||
-        endsWith(s, len, "εσ") ||
-        endsWith(s, len, "ησ") ||
-        endsWith(s, len, "οι") ||
-        endsWith(s, len, "οσ") ||
-        endsWith(s, len, "ου") ||
-        endsWith(s, len, "υα") ||
-        endsWith(s, len, "υσ") ||
-        endsWith(s, len, "ων"))) {
-      if(String.valueOf(s).startsWith("σπορ")) {
+    if (len > 2 && SUFFIXES.matches(node, R22_H)) {
+      if (startsWith(s, len, prefix22a)) {
         s[len - 2] = 'ο';
         return len - 1;
-      } else if(String.valueOf(s).startsWith("ντουλαπ")) {
+      } else if (startsWith(s, len, prefix22b)) {
         s[len - 2] = 'α';
         return len - 1;
-      } else if (String.valueOf(s).startsWith("πασχαλιν")) {
+      } else if (startsWith(s, len, prefix22c)) {
         return len - 5;
       } else {
         return len - 2;
       }
     }
 
-    if (String.valueOf(s).equals("πασχα"))
+    if (EXCEPTIONS.contains(EXC22B, s, len))
       return len;
 
     if (len > 1 && endsWithVowel(s, len)) {
-      if (String.valueOf(s).startsWith("πασχαλιν"))
+      if (startsWith(s, len, prefix22c))
         return len - 4;
       else
         return len - 1;
@@ -974,33 +1005,29 @@ public class SkroutzGreekStemmer {
     return len;
   }
 
-  private static final CharArraySet exc23a = new CharArraySet(
-      Arrays.asList("εξ", "εσ", "κατ", "αν", "κ", "μ", "πρ"), false);
+  private static final int EXC23A = exceptions("εξ", "εσ", "κατ", "αν", "κ",
+      "μ", "πρ");
 
-  private static final CharArraySet exc23b = new CharArraySet(
-      Arrays.asList("κα", "μ", "λε", "ελε", "δε"), false);
+  private static final int EXC23B = exceptions("κα", "μ", "λε", "ελε", "δε");
 
+  private static final int R23_A = group("εστερ", "εστατ");
+  private static final int R23_B = group("οτερ", "οτατ", "υτερ", "υτατ", "ωτερ",
+      "ωτατ");
 
-  private int rule23(char s[], int len) {
+  private int rule23(char s[], int len, int node) {
     boolean removed = false;
-    if (endsWith(s, len, "εστερ") ||
-        endsWith(s, len, "εστατ"))
+    if (SUFFIXES.matches(node, R23_A))
       return len - 5;
 
-    if (endsWith(s, len, "οτερ") ||
-        endsWith(s, len, "οτατ") ||
-        endsWith(s, len, "υτερ") ||
-        endsWith(s, len, "υτατ") ||
-        endsWith(s, len, "ωτερ") ||
-        endsWith(s, len, "ωτατ")) {
+    if (SUFFIXES.matches(node, R23_B)) {
       len -= 4;
       removed = true;
     }
 
     if (removed) {
-      if (exc23a.contains(s, 0, len)) {
+      if (EXCEPTIONS.contains(EXC23A, s, len)) {
         len += 4;
-      }else if (exc23b.contains(s, 0, len)) {
+      }else if (EXCEPTIONS.contains(EXC23B, s, len)) {
         len += 2;
         s[len - 2] = 'υ';
         s[len - 1] = 'τ';
@@ -1011,12 +1038,99 @@ public class SkroutzGreekStemmer {
     return len;
   }
 
-  private boolean endsWith(char s[], int len, String suffix) {
-    final int suffixLen = suffix.length();
-    if (suffixLen > len)
+  /**
+   * All the suffixes of all rules, compiled once into a single automaton.
+   * Declared after every rule's groups so that it is built last.
+   */
+  private static final SuffixAutomaton SUFFIXES = SUFFIX_GROUPS.build();
+
+  /**
+   * All the exception sets of all rules, compiled once into a single perfect
+   * hash table; built last, like {@link #SUFFIXES}.
+   */
+  private static final ExceptionSets EXCEPTIONS = EXCEPTION_SETS.build();
+
+  /**
+   * The groups that every rule tests on the token it is given, by rule id. A
+   * rule leaves a token that ends with none of them as it is: every change it
+   * makes is behind one of these tests.
+   */
+  private static final int[][] ENTRY_GROUPS = {
+      { R0_A, R0_B, R0_C, R0_D, R0_E, R0_F, R0_G, R0_H, R0_I, R0_J, R0_K, R0_L,
+          R0_M, R0_N, R0_O, R0_P },
+      { R1 },
+      { R2 },
+      { R3 },
+      { R4_A, R4_B },
+      { R5A_A, R5A_B, R5A_C },
+      { R5B_IO, R5B_B, R5B_C },
+      { R6_A, R6_B, R6_C },
+      { R7_AGAME, R7_A, R7_B, R7_C, R7_D },
+      { R8_A, R8_B, R8_C, R8_D, R8_E },
+      { R9_A, R9_B },
+      { R10 },
+      { R11_A, R11_B },
+      { R12_A, R12_B },
+      { R13_A, R13_B, R13_C, R13_D },
+      { R14_A, R14_B },
+      { R15_A, R15_B },
+      { R16_A, R16_B },
+      { R17 },
+      { R18_A, R18_B },
+      { R19_A, R19_B },
+      { R20_A, R20_B, R20_C },
+      { R21 },
+      { R22_A, R22_B, R22_C, R22_D, R22_E, R22_F, R22_G, R22_H, R22_VOWEL },
+      { R23_A, R23_B } };
+
+  /**
+   * The rules that a token ending at each automaton node can trigger, one bit
+   * per rule id.
+   */
+  private static final int[] RULE_MASKS = ruleMasks();
+
+  private static int[] ruleMasks() {
+    final int[] masks = new int[SUFFIXES.nodeCount()];
+    for (int node = 0; node < masks.length; node++)
+      for (int rule = 0; rule < RULE_COUNT; rule++)
+        for (int group : ENTRY_GROUPS[rule])
+          if (SUFFIXES.matches(node, group))
+            masks[node] |= 1 << rule;
+    return masks;
+  }
+
+  /**
+   * The rules that can change {@code s[0..len)}, one bit per rule id; every
+   * other rule would leave it as it is.
+   */
+  static int ruleMask(char s[], int len) {
+    return RULE_MASKS[SUFFIXES.walk(s, len)];
+  }
+
+  /**
+   * Runs the single rule {@code rule} on {@code s[0..len)}.
+   */
+  int stemRule(int rule, char s[], int len) {
+    return rule(rule, s, len, SUFFIXES.walk(s, len));
+  }
+
+  private static int group(String... suffixes) {
+    return SUFFIX_GROUPS.add(suffixes);
+  }
+
+  private static int exceptions(String... words) {
+    return EXCEPTION_SETS.add(words);
+  }
+
+  /**
+   * Whether the token {@code s[0..len)} starts with {@code prefix}; unlike
+   * going through a String this neither allocates nor looks past {@code len}.
+   */
+  private static boolean startsWith(char s[], int len, char prefix[]) {
+    if (prefix.length > len)
       return false;
-    for (int i = suffixLen - 1; i >= 0; i--)
-      if (s[len -(suffixLen - i)] != suffix.charAt(i))
+    for (int i = 0; i < prefix.length; i++)
+      if (s[i] != prefix[i])
         return false;
 
     return true;
@@ -1,8 +1,18 @@
 package org.elasticsearch.index.analysis;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.miscellaneous.StemmerOverrideFilter.Builder;
+import org.apache.lucene.analysis.miscellaneous.StemmerOverrideFilter.StemmerOverrideMap;
 
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.inject.assistedinject.Assisted;
@@ -10,18 +20,182 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.IndexSettings;
 
+/**
+ * Creates {@link SkroutzGreekStemTokenFilter}s.
+ * <p>
+ * The filter can also be used in custom normalizers, so that {@code keyword}
+ * fields can hold stems with doc values. It then stems the query terms of
+ * prefix, wildcard and fuzzy queries on {@code text} fields too.
+ */
 public class SkroutzGreekStemmerTokenFilterFactory extends
-		AbstractTokenFilterFactory {
+		AbstractTokenFilterFactory implements NormalizingTokenFilterFactory {
+
+	/**
+	 * Compiled stem exceptions by their rules, so that indices configured with
+	 * the same exceptions share a single FST on the node, for as long as one
+	 * of them is open.
+	 */
+	private static final SharedCache<List<String>, StemmerOverrideMap> EXCEPTIONS_CACHE =
+			new SharedCache<>();
+
+	/**
+	 * Memory-mapped stem dictionaries by their real path, so that every shard
+	 * on the node shares a single mapping of each dictionary file. An entry is
+	 * only reused while the file is the same one, with the same modification
+	 * time and size; a rebuilt file is mapped again and replaces it.
+	 */
+	private static final SharedCache<Path, StemmerOverrideMap> DICTIONARY_CACHE =
+			new SharedCache<>();
+
+	/**
+	 * Compiled stemming rules by the content of their rule file, so that
+	 * indices with the same custom rules share a single stemmer on the node,
+	 * and an edited file is compiled again for the indices created or opened
+	 * after the edit.
+	 */
+	private static final SharedCache<String, SkroutzGreekStemmer> RULES_CACHE =
+			new SharedCache<>();
+
+	/** the largest memo_size, every token stream allocates its own memo */
+	static final int MAX_MEMO_SIZE = 1 << 16;
+
+	protected final SkroutzGreekStemmer stemmer;
+	protected final StemmerOverrideMap exceptions;
+	protected final StemmerOverrideMap dictionary;
+	protected final StemCache cache;
+	protected final StemmerMetrics metrics;
+	protected final int memoSize;
+	protected final int flags;
 
 	@Inject
 	public SkroutzGreekStemmerTokenFilterFactory(IndexSettings indexSettings,
 												 Environment env, @Assisted String name,
 												 @Assisted Settings settings) throws IOException {
+		this(indexSettings, env, name, settings, null, null);
+	}
+
+	/**
+	 * @param cache   the node-wide stem cache, or null if it is disabled
+	 * @param metrics the node-wide stemming metrics, or null if they are disabled
+	 */
+	public SkroutzGreekStemmerTokenFilterFactory(IndexSettings indexSettings,
+												 Environment env, String name,
+												 Settings settings, StemCache cache,
+												 StemmerMetrics metrics) throws IOException {
 		super(indexSettings, name, settings);
+		this.metrics = metrics;
+
+		// a rule file in the format of skroutz_greek_rules.txt, relative to the
+		// config directory; the node-wide cache only holds built-in stems
+		String rulesPath = settings.get("rules_path");
+		if (rulesPath == null) {
+			this.stemmer = SkroutzGreekStemmer.INSTANCE;
+			this.cache = cache;
+		} else {
+			this.stemmer = compileRules(env.configFile().resolve(rulesPath));
+			this.cache = null;
+		}
+
+		// either inline "stem_exceptions" or a "stem_exceptions_path" file,
+		// in the format of greek_exceptions.txt
+		List<String> rules = Analysis.getWordList(env, settings, "stem_exceptions");
+		if (rules == null || rules.isEmpty()) {
+			this.exceptions = null;
+		} else {
+			this.exceptions = EXCEPTIONS_CACHE.get(rules, null,
+					SkroutzGreekStemmerTokenFilterFactory::compileExceptions);
+		}
+
+		// a SkroutzGreekStemDictionary file, relative to the config directory
+		String dictionaryPath = settings.get("dictionary_path");
+		if (dictionaryPath == null) {
+			this.dictionary = null;
+		} else if (rulesPath != null) {
+			// the dictionary holds the stems of the built-in rules, so known and
+			// unknown words would be stemmed by different rules
+			throw new IllegalArgumentException("[dictionary_path] cannot be used with [rules_path]");
+		} else {
+			this.dictionary = openDictionary(env.configFile().resolve(dictionaryPath));
+		}
+
+		// slots of the per-stream memo of recent stems, 0 to disable it,
+		// rounded up to a power of two
+		int memoSize = settings.getAsInt("memo_size", 0);
+		if (memoSize < 0 || memoSize > MAX_MEMO_SIZE)
+			throw new IllegalArgumentException("[memo_size] must be between 0 and " + MAX_MEMO_SIZE
+					+ ", got [" + memoSize + "]");
+		this.memoSize = memoSize <= 1 ? memoSize : Integer.highestOneBit(memoSize - 1) << 1;
+
+		int flags = 0;
+		if (settings.getAsBoolean("greek_only", false))
+			flags |= SkroutzGreekStemTokenFilter.GREEK_ONLY;
+		if (settings.getAsBoolean("skip_digits", false))
+			flags |= SkroutzGreekStemTokenFilter.SKIP_DIGITS;
+		if (settings.getAsBoolean("preserve_original", false))
+			flags |= SkroutzGreekStemTokenFilter.PRESERVE_ORIGINAL;
+		this.flags = flags;
 	}
 
 	@Override
 	public TokenStream create(TokenStream tokenStream) {
-		return new SkroutzGreekStemTokenFilter(tokenStream);
+		return new SkroutzGreekStemTokenFilter(tokenStream, exceptions, dictionary, cache, metrics, memoSize, flags,
+				stemmer);
+	}
+
+	/**
+	 * Like {@link #create(TokenStream)}, without the memo and
+	 * {@code preserve_original}: a normalizer emits a single token per value.
+	 */
+	@Override
+	public TokenStream normalize(TokenStream tokenStream) {
+		return new SkroutzGreekStemTokenFilter(tokenStream, exceptions, dictionary, cache, metrics, 0,
+				flags & ~SkroutzGreekStemTokenFilter.PRESERVE_ORIGINAL, stemmer);
+	}
+
+	private static SkroutzGreekStemmer compileRules(Path path) {
+		try {
+			String rules = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(Files.readAllBytes(path))).toString();
+			return RULES_CACHE.get(rules, null, content -> SkroutzGreekRuleStemmer.compile(new StringReader(content)));
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Failed to load stem rules [" + path + "]", e);
+		}
+	}
+
+	private static StemmerOverrideMap openDictionary(Path path) {
+		try {
+			Path realPath = path.toRealPath();
+			BasicFileAttributes attributes = Files.readAttributes(realPath, BasicFileAttributes.class);
+			return DICTIONARY_CACHE.get(realPath,
+					Arrays.asList(attributes.fileKey(), attributes.lastModifiedTime(), attributes.size()),
+					SkroutzGreekStemDictionary::open);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Failed to load stem dictionary [" + path + "]", e);
+		}
+	}
+
+	/**
+	 * Compiles rules of the form {@code word[, word...] => stem} into an FST.
+	 */
+	static StemmerOverrideMap compileExceptions(List<String> rules) {
+		Builder builder = new Builder(false);
+		for (String rule : rules) {
+			String[] sides = rule.split("=>", -1);
+			if (sides.length != 2 || sides[1].trim().isEmpty())
+				throw new IllegalArgumentException("Invalid stem exception rule: " + rule);
+
+			String stem = sides[1].trim();
+			for (String word : sides[0].split(",")) {
+				word = word.trim();
+				if (word.isEmpty())
+					throw new IllegalArgumentException("Invalid stem exception rule: " + rule);
+				builder.add(word, stem);
+			}
+		}
+
+		try {
+			return builder.build();
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Failed to compile stem exceptions", e);
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,198 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, node-wide cache of word to stem results of the stemming rules,
+ * shared by every {@link SkroutzGreekStemTokenFilter} on the node.
+ * <p>
+ * The cache is split into lock-striped segments, each evicting with the CLOCK
+ * algorithm. Lookups hash the term buffer in place and do not allocate; only
+ * storing a new stem copies the word and the stem.
+ */
+public class StemCache {
+  private static final int STRIPES = 16;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final int capacity;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param size the maximum number of cached stems
+   */
+  public StemCache(int size) {
+    if (size <= 0)
+      throw new IllegalArgumentException("stem cache size must be positive, got [" + size + "]");
+    final int stripeCapacity = (size + STRIPES - 1) / STRIPES;
+    for (int i = 0; i < STRIPES; i++)
+      stripes[i] = new Stripe(stripeCapacity);
+    this.capacity = stripeCapacity * STRIPES;
+  }
+
+  /**
+   * Returns the cached stem of {@code word[0..length)}, or null. The returned
+   * array must not be modified.
+   */
+  public char[] get(char[] word, int length) {
+    final int hash = hash(word, length);
+    final char[] stem = stripe(hash).get(word, length, hash);
+    if (stem == null)
+      misses.increment();
+    else
+      hits.increment();
+    return stem;
+  }
+
+  /**
+   * Caches {@code stem[0..stemLength)} as the stem of {@code word[0..wordLength)}.
+   */
+  public void put(char[] word, int wordLength, char[] stem, int stemLength) {
+    final int hash = hash(word, wordLength);
+    final Key key = new Key();
+    key.set(copy(word, wordLength), wordLength, hash);
+    if (stripe(hash).put(key, copy(stem, stemLength)))
+      evictions.increment();
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public int count() {
+    int count = 0;
+    for (Stripe stripe : stripes)
+      count += stripe.count();
+    return count;
+  }
+
+  public long hits() {
+    return hits.sum();
+  }
+
+  public long misses() {
+    return misses.sum();
+  }
+
+  public long evictions() {
+    return evictions.sum();
+  }
+
+  private Stripe stripe(int hash) {
+    return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+  }
+
+  private static int hash(char[] word, int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++)
+      hash = 31 * hash + word[i];
+    return hash;
+  }
+
+  private static char[] copy(char[] chars, int length) {
+    final char[] copy = new char[length];
+    System.arraycopy(chars, 0, copy, 0, length);
+    return copy;
+  }
+
+  /**
+   * A word, either owned by the cache or, for lookups, a view on a term buffer.
+   */
+  private static final class Key {
+    private char[] chars;
+    private int length;
+    private int hash;
+
+    void set(char[] chars, int length, int hash) {
+      this.chars = chars;
+      this.length = length;
+      this.hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key))
+        return false;
+      final Key other = (Key) obj;
+      if (hash != other.hash || length != other.length)
+        return false;
+      for (int i = 0; i < length; i++)
+        if (chars[i] != other.chars[i])
+          return false;
+      return true;
+    }
+  }
+
+  private static final class Entry {
+    final Key key;
+    final char[] stem;
+    boolean referenced;
+
+    Entry(Key key, char[] stem) {
+      this.key = key;
+      this.stem = stem;
+    }
+  }
+
+  private static final class Stripe {
+    private final Map<Key, Entry> entries;
+    /** the CLOCK ring */
+    private final Entry[] ring;
+    private int hand;
+    private int count;
+    /** reused for lookups, under the stripe's lock */
+    private final Key probe = new Key();
+
+    Stripe(int capacity) {
+      this.entries = new HashMap<>(capacity * 4 / 3 + 1);
+      this.ring = new Entry[capacity];
+    }
+
+    synchronized char[] get(char[] word, int length, int hash) {
+      probe.set(word, length, hash);
+      final Entry entry = entries.get(probe);
+      probe.set(null, 0, 0);
+      if (entry == null)
+        return null;
+      entry.referenced = true;
+      return entry.stem;
+    }
+
+    /**
+     * @return whether an entry was evicted to make room
+     */
+    synchronized boolean put(Key key, char[] stem) {
+      if (entries.containsKey(key))
+        return false; // another thread stemmed the same word
+
+      final Entry entry = new Entry(key, stem);
+      entries.put(key, entry);
+      if (count < ring.length) {
+        ring[count++] = entry;
+        return false;
+      }
+
+      // give referenced entries a second chance
+      while (ring[hand].referenced) {
+        ring[hand].referenced = false;
+        hand = (hand + 1) % ring.length;
+      }
+      entries.remove(ring[hand].key);
+      ring[hand] = entry;
+      hand = (hand + 1) % ring.length;
+      return true;
+    }
+
+    synchronized int count() {
+      return count;
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.Arrays;
+
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * A small, direct-mapped memo of recent word to stem results, owned by a
+ * single token stream.
+ * <p>
+ * Every word maps to exactly one slot by its hash; a colliding word simply
+ * replaces the previous one. Slots keep their buffers for the life of the
+ * stream, across {@code reset()}, so once they have grown to the longest
+ * word seen nothing is allocated.
+ */
+final class StemMemo {
+  private final int mask;
+  private final int[] hashes;
+  private final char[][] words;
+  private final int[] wordLengths;
+  private final char[][] stems;
+  /** -1 for a slot without a stem */
+  private final int[] stemLengths;
+  /** the hash of the word last passed to {@link #find} */
+  private int lastHash;
+
+  /**
+   * @param size the number of slots, rounded up to a power of two
+   */
+  StemMemo(int size) {
+    if (size <= 0)
+      throw new IllegalArgumentException("stem memo size must be positive, got [" + size + "]");
+    final int slots = Integer.highestOneBit(size - 1) << 1;
+    this.mask = Math.max(slots, 1) - 1;
+    this.hashes = new int[mask + 1];
+    this.words = new char[mask + 1][];
+    this.wordLengths = new int[mask + 1];
+    this.stems = new char[mask + 1][];
+    this.stemLengths = new int[mask + 1];
+    Arrays.fill(stemLengths, -1);
+  }
+
+  /**
+   * Returns the slot of {@code word[0..length)}, or, if the memo does not
+   * hold it, the complement {@code -(slot + 1)} of the slot it would go to.
+   */
+  int find(char[] word, int length) {
+    int hash = 0;
+    for (int i = 0; i < length; i++)
+      hash = 31 * hash + word[i];
+    final int slot = (hash ^ (hash >>> 16)) & mask;
+    lastHash = hash;
+
+    if (stemLengths[slot] < 0 || hashes[slot] != hash || wordLengths[slot] != length)
+      return -(slot + 1);
+    final char[] memoized = words[slot];
+    for (int i = 0; i < length; i++)
+      if (memoized[i] != word[i])
+        return -(slot + 1);
+    return slot;
+  }
+
+  char[] stem(int slot) {
+    return stems[slot];
+  }
+
+  int stemLength(int slot) {
+    return stemLengths[slot];
+  }
+
+  /**
+   * Starts filling {@code slot} with {@code word[0..length)}, the word last
+   * passed to {@link #find}; the slot is empty until {@link #setStem}
+   * completes it.
+   */
+  void setWord(int slot, char[] word, int length) {
+    stemLengths[slot] = -1;
+    hashes[slot] = lastHash;
+    words[slot] = copy(words[slot], word, length);
+    wordLengths[slot] = length;
+  }
+
+  void setStem(int slot, char[] stem, int length) {
+    stems[slot] = copy(stems[slot], stem, length);
+    stemLengths[slot] = length;
+  }
+
+  private static char[] copy(char[] to, char[] from, int length) {
+    if (to == null || to.length < length)
+      to = new char[ArrayUtil.oversize(length, Character.BYTES)];
+    System.arraycopy(from, 0, to, 0, length);
+    return to;
+  }
+}
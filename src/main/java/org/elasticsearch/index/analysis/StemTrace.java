@@ -0,0 +1,91 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The chain of rules that {@link SkroutzGreekStemmer} applied to a word,
+ * recorded through its instrumented
+ * {@link SkroutzGreekStemmer#stem(char[], int, SkroutzGreekStemmer.RuleListener)}.
+ */
+public final class StemTrace {
+  private final String word;
+  private final String stem;
+  private final List<Step> steps;
+
+  private StemTrace(String word, String stem, List<Step> steps) {
+    this.word = word;
+    this.stem = stem;
+    this.steps = steps;
+  }
+
+  /**
+   * Stems {@code word} and records every rule of {@code stemmer} that changed it.
+   *
+   * @param fold whether to casefold the word first, like
+   *             {@link SkroutzGreekStemTokenFilter#FOLD} does
+   */
+  public static StemTrace trace(SkroutzGreekStemmer stemmer, String word, boolean fold) {
+    final char[] token = word.toCharArray();
+    if (fold)
+      SkroutzGreekFolding.fold(token, token.length);
+
+    final List<Step> steps = new ArrayList<>();
+    final int len = stemmer.stem(token, token.length, (rule, lenBefore, lenAfter) ->
+        steps.add(new Step(stemmer.ruleName(rule), lenBefore, lenAfter,
+            new String(token, 0, lenAfter))));
+    return new StemTrace(word, new String(token, 0, len), Collections.unmodifiableList(steps));
+  }
+
+  public String word() {
+    return word;
+  }
+
+  public String stem() {
+    return stem;
+  }
+
+  /**
+   * @return the rules that changed the word, in the order they ran
+   */
+  public List<Step> steps() {
+    return steps;
+  }
+
+  /**
+   * A single rule that changed the word.
+   */
+  public static final class Step {
+    private final String rule;
+    private final int lengthBefore;
+    private final int lengthAfter;
+    private final String term;
+
+    Step(String rule, int lengthBefore, int lengthAfter, String term) {
+      this.rule = rule;
+      this.lengthBefore = lengthBefore;
+      this.lengthAfter = lengthAfter;
+      this.term = term;
+    }
+
+    public String rule() {
+      return rule;
+    }
+
+    public int lengthBefore() {
+      return lengthBefore;
+    }
+
+    public int lengthAfter() {
+      return lengthAfter;
+    }
+
+    /**
+     * @return the word as the rule left it
+     */
+    public String term() {
+      return term;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Node-wide counters of what {@link SkroutzGreekStemTokenFilter} does with
+ * its tokens: how many were stemmed, overridden by exceptions or the
+ * dictionary, or skipped, which rules fired, and a sampled histogram of the
+ * time spent stemming a token.
+ * <p>
+ * Filters only report here when metrics are enabled; otherwise they run the
+ * uninstrumented {@link SkroutzGreekStemmer#stem(char[], int)}. Rule hits are
+ * only counted for the filters that stem with {@link #stemmer()}, by its rule
+ * ids.
+ */
+public class StemmerMetrics implements SkroutzGreekStemmer.RuleListener {
+  /** one in {@code SAMPLE_MASK + 1} stemmed tokens per stream is timed */
+  static final int SAMPLE_MASK = 63;
+  /** latency buckets by the bit length of the nanoseconds, the last one open */
+  public static final int LATENCY_BUCKETS = 32;
+
+  private final SkroutzGreekStemmer stemmer;
+  private final LongAdder stemmed = new LongAdder();
+  private final LongAdder overridden = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+  private final LongAdder[] rules;
+  private final LongAdder[] latency = adders(LATENCY_BUCKETS);
+  private final LongAdder latencyNanos = new LongAdder();
+
+  /**
+   * Metrics that count the rules of the built-in stemmer.
+   */
+  public StemmerMetrics() {
+    this(SkroutzGreekStemmer.INSTANCE);
+  }
+
+  /**
+   * Metrics that count the rules of {@code stemmer}.
+   */
+  public StemmerMetrics(SkroutzGreekStemmer stemmer) {
+    this.stemmer = stemmer;
+    this.rules = adders(stemmer.ruleCount());
+  }
+
+  /** the stemmer whose rules are counted */
+  public SkroutzGreekStemmer stemmer() {
+    return stemmer;
+  }
+
+  @Override
+  public void onRule(int rule, int lenBefore, int lenAfter) {
+    rules[rule].increment();
+  }
+
+  void onStemmed() {
+    stemmed.increment();
+  }
+
+  void onOverridden() {
+    overridden.increment();
+  }
+
+  void onSkipped() {
+    skipped.increment();
+  }
+
+  void onSample(long nanos) {
+    latency[Math.min(64 - Long.numberOfLeadingZeros(nanos), LATENCY_BUCKETS - 1)].increment();
+    latencyNanos.add(nanos);
+  }
+
+  /** tokens run through the memo, the cache or the stemming rules */
+  public long stemmed() {
+    return stemmed.sum();
+  }
+
+  /** tokens replaced by a stem exception or a dictionary entry */
+  public long overridden() {
+    return overridden.sum();
+  }
+
+  /** keyword tokens and tokens skipped by {@code greek_only} or {@code skip_digits} */
+  public long skipped() {
+    return skipped.sum();
+  }
+
+  /**
+   * How many times {@code rule} changed a token; memo and cache hits do not
+   * run the rules and are not counted.
+   */
+  public long ruleHits(int rule) {
+    return rules[rule].sum();
+  }
+
+  /**
+   * The number of sampled stemming times that took less than
+   * {@code 2^bucket} nanoseconds, and at least {@code 2^(bucket - 1)}.
+   */
+  public long latencySamples(int bucket) {
+    return latency[bucket].sum();
+  }
+
+  public long latencyNanos() {
+    return latencyNanos.sum();
+  }
+
+  private static LongAdder[] adders(int count) {
+    final LongAdder[] adders = new LongAdder[count];
+    for (int i = 0; i < count; i++)
+      adders[i] = new LongAdder();
+    return adders;
+  }
+}
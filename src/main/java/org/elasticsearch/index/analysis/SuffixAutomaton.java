@@ -0,0 +1,137 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A reversed-suffix trie, compiled into flat arrays, that answers "which of
+ * the registered suffix groups does this token end with" with a single
+ * backwards walk over the token.
+ * <p>
+ * Suffixes are registered in groups through {@link Builder#add(String...)};
+ * a group matches when the token ends with any of its suffixes. Every node
+ * of the trie carries the bit set of the groups that terminate on the path
+ * from the root to it, so after {@link #walk(char[], int)} has returned the
+ * deepest node reachable from the end of the token, {@link #matches(int, int)}
+ * is a single bit test.
+ */
+final class SuffixAutomaton {
+  /** children of node {@code i} live in {@code [firstChild[i], firstChild[i + 1])} */
+  private final int[] firstChild;
+  /** sorted edge labels, parallel to {@link #targets} */
+  private final char[] labels;
+  private final int[] targets;
+  /** {@code words} longs of accumulated group bits per node */
+  private final long[] masks;
+  private final int words;
+
+  private SuffixAutomaton(int[] firstChild, char[] labels, int[] targets,
+                          long[] masks, int words) {
+    this.firstChild = firstChild;
+    this.labels = labels;
+    this.targets = targets;
+    this.masks = masks;
+    this.words = words;
+  }
+
+  /**
+   * Walks {@code s[0..len)} backwards and returns the deepest node reached,
+   * i.e. the node of the longest registered suffix prefix the token ends with.
+   */
+  int walk(char s[], int len) {
+    int node = 0;
+    for (int i = len - 1; i >= 0; i--) {
+      final int child = child(node, s[i]);
+      if (child < 0)
+        break;
+      node = child;
+    }
+    return node;
+  }
+
+  /**
+   * Returns whether the token that {@code node} was obtained from ends with
+   * any suffix of {@code group}.
+   */
+  boolean matches(int node, int group) {
+    return (masks[node * words + (group >>> 6)] & (1L << group)) != 0;
+  }
+
+  int nodeCount() {
+    return firstChild.length - 1;
+  }
+
+  private int child(int node, char c) {
+    for (int i = firstChild[node], end = firstChild[node + 1]; i < end; i++) {
+      final char label = labels[i];
+      if (label == c)
+        return targets[i];
+      if (label > c)
+        break;
+    }
+    return -1;
+  }
+
+  /**
+   * Collects suffix groups and compiles them into a {@link SuffixAutomaton}.
+   */
+  static final class Builder {
+    private final Node root = new Node();
+    private int groups;
+
+    /**
+     * Registers a group of alternative suffixes and returns its id.
+     */
+    int add(String... suffixes) {
+      final int group = groups++;
+      for (String suffix : suffixes) {
+        Node node = root;
+        for (int i = suffix.length() - 1; i >= 0; i--)
+          node = node.children.computeIfAbsent(suffix.charAt(i), c -> new Node());
+        node.groups.add(group);
+      }
+      return group;
+    }
+
+    SuffixAutomaton build() {
+      // breadth first, so that the children of every node are contiguous
+      final List<Node> order = new ArrayList<>();
+      order.add(root);
+      for (int i = 0; i < order.size(); i++)
+        order.addAll(order.get(i).children.values());
+
+      final int words = Math.max(1, (groups + 63) >>> 6);
+      final int[] firstChild = new int[order.size() + 1];
+      final char[] labels = new char[order.size() - 1];
+      final int[] targets = new int[order.size() - 1];
+      final long[] masks = new long[order.size() * words];
+
+      int edge = 0;
+      int next = 1;
+      for (int i = 0; i < order.size(); i++) {
+        final Node node = order.get(i);
+        for (int group : node.groups)
+          masks[i * words + (group >>> 6)] |= 1L << group;
+        firstChild[i] = edge;
+        for (Map.Entry<Character, Node> e : node.children.entrySet()) {
+          final int child = next++;
+          labels[edge] = e.getKey();
+          targets[edge] = child;
+          edge++;
+          // a child inherits every group that matched on the way to it
+          System.arraycopy(masks, i * words, masks, child * words, words);
+        }
+      }
+      firstChild[order.size()] = edge;
+
+      return new SuffixAutomaton(firstChild, labels, targets, masks, words);
+    }
+
+    private static final class Node {
+      final TreeMap<Character, Node> children = new TreeMap<>();
+      final List<Integer> groups = new ArrayList<>();
+    }
+  }
+}
@@ -0,0 +1,288 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.ArrayUtil;
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.xcontent.LoggingDeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.analysis.SkroutzGreekFolding;
+import org.elasticsearch.index.analysis.SkroutzGreekStemmer;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * {@code POST _skroutz_stem/_bulk}: stems a large list of words in one request
+ * and returns {@code {"stems": [...]}}, in the order of the words.
+ * <p>
+ * The words are given either as {@code {"words": [...]}}, or as NDJSON with
+ * one JSON string per line. With {@code fold} they are casefolded first, like
+ * {@code skroutz_greek_fold_stem} does. The body is parsed on the
+ * {@link SkroutzGreekStemmerPlugin#STEM_THREAD_POOL} thread pool rather than
+ * on the network thread, and large lists are split into batches that are
+ * stemmed in parallel on the same pool. The stems of a batch are written to
+ * the response as soon as it and the batches before it have finished.
+ * <p>
+ * A request can have at most {@link #MAX_WORDS_SETTING} words.
+ * <p>
+ * Like {@link RestSkroutzStemExplainAction}, it only applies the built-in
+ * rules and says so with {@code "stemmer": "built_in"}; the rule files, stem
+ * exceptions and dictionaries of an index's filters are not applied.
+ */
+public class RestSkroutzStemBulkAction extends BaseRestHandler {
+	private static final Logger logger = LogManager.getLogger(RestSkroutzStemBulkAction.class);
+
+	/**
+	 * Maximum number of words of a bulk request; larger ones are rejected.
+	 */
+	public static final Setting<Integer> MAX_WORDS_SETTING =
+			Setting.intSetting("skroutz_stemmer.bulk.max_words", 100000, 1, Property.NodeScope);
+
+	/** the fewest words worth a separate task */
+	static final int MIN_BATCH_SIZE = 4096;
+
+	private final int maxWords;
+
+	public RestSkroutzStemBulkAction(Settings settings) {
+		this.maxWords = MAX_WORDS_SETTING.get(settings);
+	}
+
+	@Override
+	public String getName() {
+		return "skroutz_stem_bulk_action";
+	}
+
+	@Override
+	public List<Route> routes() {
+		return Collections.singletonList(new Route(POST, "/_skroutz_stem/_bulk"));
+	}
+
+	@Override
+	public boolean supportsContentStream() {
+		return true;
+	}
+
+	@Override
+	protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+		final BytesReference content = request.requiredContent();
+		final boolean fold = request.paramAsBoolean("fold", false);
+		final String contentType = request.header("Content-Type");
+		final boolean ndjson = contentType != null && contentType.startsWith("application/x-ndjson");
+		final XContentType xContentType = request.getXContentType();
+
+		final ThreadPool threadPool = client.threadPool();
+		return channel -> {
+			final ExecutorService executor = threadPool.executor(SkroutzGreekStemmerPlugin.STEM_THREAD_POOL);
+			executor.execute(new AbstractRunnable() {
+				@Override
+				protected void doRun() throws IOException {
+					final List<String> words = new ArrayList<>();
+					boolean casefold = fold;
+					if (ndjson) {
+						parseLines(content, words, maxWords);
+					} else {
+						try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY,
+								LoggingDeprecationHandler.INSTANCE, content, xContentType)) {
+							casefold = parseObject(parser, words, casefold, maxWords);
+						}
+					}
+					final int threads = threadPool.info(SkroutzGreekStemmerPlugin.STEM_THREAD_POOL).getMax();
+					stem(words, casefold, new StemWriter(channel, batches(words.size(), threads)), executor);
+				}
+
+				@Override
+				public void onFailure(Exception e) {
+					sendFailure(channel, e);
+				}
+			});
+		};
+	}
+
+	/**
+	 * Stems {@code words} in the batches of {@code writer}, the first one on
+	 * the current thread and the others on {@code executor}.
+	 */
+	private static void stem(List<String> words, boolean fold, StemWriter writer, ExecutorService executor) {
+		final int batches = writer.batches.length;
+		for (int i = batches - 1; i >= 0; i--) {
+			final int batch = i;
+			final int from = (int) ((long) words.size() * i / batches);
+			final int to = (int) ((long) words.size() * (i + 1) / batches);
+			final AbstractRunnable task = new AbstractRunnable() {
+				@Override
+				protected void doRun() throws IOException {
+					writer.onBatch(batch, stem(words, from, to, fold));
+				}
+
+				@Override
+				public void onFailure(Exception e) {
+					writer.onFailure(e);
+				}
+			};
+			if (i == 0)
+				task.run();
+			else
+				executor.execute(task);
+		}
+	}
+
+	/**
+	 * The number of batches: one per {@link #MIN_BATCH_SIZE} words, at most one
+	 * per thread and at least one.
+	 */
+	static int batches(int words, int threads) {
+		return Math.max(1, Math.min(threads, words / MIN_BATCH_SIZE));
+	}
+
+	private static boolean parseObject(XContentParser parser, List<String> words, boolean fold,
+									   int maxWords) throws IOException {
+		if (parser.nextToken() != XContentParser.Token.START_OBJECT)
+			throw new IllegalArgumentException("expected an object with a [words] array");
+		XContentParser.Token token;
+		while ((token = parser.nextToken()) == XContentParser.Token.FIELD_NAME) {
+			final String field = parser.currentName();
+			token = parser.nextToken();
+			if ("words".equals(field)) {
+				if (token != XContentParser.Token.START_ARRAY)
+					throw new IllegalArgumentException("[words] must be an array of strings, got [" + token + "]");
+				while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+					if (token != XContentParser.Token.VALUE_STRING)
+						throw new IllegalArgumentException("[words] must be an array of strings, got [" + token + "] in it");
+					addWord(words, parser.text(), maxWords);
+				}
+			} else if ("fold".equals(field)) {
+				if (token != XContentParser.Token.VALUE_BOOLEAN && token != XContentParser.Token.VALUE_STRING)
+					throw new IllegalArgumentException("[fold] must be a boolean, got [" + token + "]");
+				fold = parser.booleanValue();
+			} else {
+				throw new IllegalArgumentException("unknown field [" + field + "]");
+			}
+		}
+		return fold;
+	}
+
+	private static void parseLines(BytesReference content, List<String> words, int maxWords) throws IOException {
+		final int length = content.length();
+		for (int from = 0; from < length;) {
+			int to = from;
+			while (to < length && content.get(to) != '\n')
+				to++;
+			if (to > from) {
+				try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY,
+						LoggingDeprecationHandler.INSTANCE, content.slice(from, to - from).streamInput())) {
+					if (parser.nextToken() != XContentParser.Token.VALUE_STRING)
+						throw new IllegalArgumentException("expected a JSON string per line");
+					addWord(words, parser.text(), maxWords);
+				}
+			}
+			from = to + 1;
+		}
+	}
+
+	/**
+	 * Adds a word, failing as soon as the request has more than
+	 * {@code maxWords}, before the rest of it is parsed.
+	 */
+	private static void addWord(List<String> words, String word, int maxWords) {
+		if (words.size() == maxWords)
+			throw new IllegalArgumentException("a bulk request can have at most [" + maxWords + "] words, see ["
+					+ MAX_WORDS_SETTING.getKey() + "]");
+		words.add(word);
+	}
+
+	private static String[] stem(List<String> words, int from, int to, boolean fold) {
+		final SkroutzGreekStemmer stemmer = SkroutzGreekStemmer.INSTANCE;
+		final String[] stems = new String[to - from];
+		char[] token = new char[64];
+		for (int i = from; i < to; i++) {
+			final String word = words.get(i);
+			final int length = word.length();
+			if (token.length < length)
+				token = new char[ArrayUtil.oversize(length, Character.BYTES)];
+			word.getChars(0, length, token, 0);
+			if (fold)
+				SkroutzGreekFolding.fold(token, length);
+			stems[i - from] = new String(token, 0, stemmer.stem(token, length));
+		}
+		return stems;
+	}
+
+	private static void sendFailure(RestChannel channel, Exception e) {
+		try {
+			channel.sendResponse(new BytesRestResponse(channel, e));
+		} catch (Exception inner) {
+			inner.addSuppressed(e);
+			logger.error("failed to send failure response", inner);
+		}
+	}
+
+	/**
+	 * Writes the stems of the batches to the response in the order of the
+	 * words: a batch is written as soon as it and all the batches before it
+	 * have finished, and only the batches that finish ahead of an earlier one
+	 * are held until then. The response is sent after the last batch, or on
+	 * the first failure.
+	 */
+	private static final class StemWriter {
+		private final RestChannel channel;
+		private final XContentBuilder builder;
+		/** the stems of the finished batches that are not written yet */
+		private final String[][] batches;
+		/** the next batch to write */
+		private int next;
+		private boolean failed;
+
+		StemWriter(RestChannel channel, int batches) throws IOException {
+			this.channel = channel;
+			this.batches = new String[batches][];
+			this.builder = channel.newBuilder();
+			builder.startObject();
+			builder.field("stemmer", RestSkroutzStemExplainAction.BUILT_IN);
+			builder.startArray("stems");
+		}
+
+		synchronized void onBatch(int batch, String[] stems) throws IOException {
+			if (failed)
+				return;
+			batches[batch] = stems;
+			while (next < batches.length && batches[next] != null) {
+				for (String stem : batches[next])
+					builder.value(stem);
+				batches[next++] = null;
+			}
+			if (next == batches.length) {
+				builder.endArray();
+				builder.endObject();
+				channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+			}
+		}
+
+		synchronized void onFailure(Exception e) {
+			if (failed || next == batches.length)
+				return;
+			failed = true;
+			sendFailure(channel, e);
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.index.analysis.SkroutzGreekStemmer;
+import org.elasticsearch.index.analysis.StemTrace;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * {@code GET|POST _skroutz_stem/_explain}: stems a list of words and shows,
+ * for each one, the rules of {@link SkroutzGreekStemmer} that changed it.
+ * <p>
+ * The words are given either as {@code {"words": [...]}} in the body, or as
+ * the comma separated {@code words} parameter. With {@code fold} they are
+ * casefolded first, like {@code skroutz_greek_fold_stem} does.
+ * <p>
+ * Only the built-in rules are explained, which the response states as
+ * {@code "stemmer": "built_in"}: the {@code rules_path}, {@code stem_exceptions}
+ * and {@code dictionary_path} of an index's filters are not applied, so the
+ * stems of such an index are only shown by its {@code _analyze} API.
+ */
+public class RestSkroutzStemExplainAction extends BaseRestHandler {
+	/** the {@code stemmer} of the responses, which only use the built-in rules */
+	static final String BUILT_IN = "built_in";
+
+	@Override
+	public String getName() {
+		return "skroutz_stem_explain_action";
+	}
+
+	@Override
+	public List<Route> routes() {
+		return Collections.unmodifiableList(Arrays.asList(
+				new Route(GET, "/_skroutz_stem/_explain"),
+				new Route(POST, "/_skroutz_stem/_explain")));
+	}
+
+	@Override
+	protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) throws IOException {
+		final List<String> words = new ArrayList<>();
+		boolean fold = request.paramAsBoolean("fold", false);
+		if (request.hasParam("words"))
+			words.addAll(Arrays.asList(Strings.splitStringByCommaToArray(request.param("words"))));
+		if (request.hasContent()) {
+			try (XContentParser parser = request.contentParser()) {
+				Map<String, Object> body = parser.map();
+				for (Object word : XContentMapValues.extractRawValues("words", body))
+					words.add(word.toString());
+				fold = XContentMapValues.nodeBooleanValue(body.get("fold"), fold);
+			}
+		}
+		if (words.isEmpty())
+			throw new IllegalArgumentException("[words] is required");
+
+		final boolean casefold = fold;
+		return channel -> {
+			XContentBuilder builder = channel.newBuilder();
+			builder.startObject();
+			builder.field("stemmer", BUILT_IN);
+			builder.startArray("words");
+			for (String word : words)
+				toXContent(StemTrace.trace(SkroutzGreekStemmer.INSTANCE, word, casefold), builder);
+			builder.endArray();
+			builder.endObject();
+			channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+		};
+	}
+
+	private static void toXContent(StemTrace trace, XContentBuilder builder) throws IOException {
+		builder.startObject();
+		builder.field("word", trace.word());
+		builder.field("stem", trace.stem());
+		builder.startArray("rules");
+		for (StemTrace.Step step : trace.steps()) {
+			builder.startObject();
+			builder.field("rule", step.rule());
+			builder.field("length_before", step.lengthBefore());
+			builder.field("length_after", step.lengthAfter());
+			builder.field("term", step.term());
+			builder.endObject();
+		}
+		builder.endArray();
+		builder.endObject();
+	}
+}
@@ -0,0 +1,41 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.action.RestActions.NodesResponseRestListener;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+/**
+ * {@code GET _nodes/skroutz_stemmer/stats} and
+ * {@code GET _nodes/{nodeId}/skroutz_stemmer/stats}.
+ */
+public class RestSkroutzStemmerStatsAction extends BaseRestHandler {
+
+	@Override
+	public String getName() {
+		return "skroutz_stemmer_stats_action";
+	}
+
+	@Override
+	public List<Route> routes() {
+		return Collections.unmodifiableList(Arrays.asList(
+				new Route(GET, "/_nodes/skroutz_stemmer/stats"),
+				new Route(GET, "/_nodes/{nodeId}/skroutz_stemmer/stats")));
+	}
+
+	@Override
+	protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+		SkroutzStemmerStatsRequest statsRequest = new SkroutzStemmerStatsRequest(
+				Strings.splitStringByCommaToArray(request.param("nodeId")));
+		statsRequest.timeout(request.param("timeout"));
+		return channel -> client.execute(SkroutzStemmerStatsAction.INSTANCE, statsRequest,
+				new NodesResponseRestListener<>(channel));
+	}
+}
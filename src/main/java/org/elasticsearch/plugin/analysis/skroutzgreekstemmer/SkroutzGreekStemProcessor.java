@@ -0,0 +1,135 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.elasticsearch.index.analysis.SkroutzGreekStemTokenFilter;
+import org.elasticsearch.index.analysis.StemCache;
+import org.elasticsearch.index.analysis.StemmerMetrics;
+import org.elasticsearch.ingest.AbstractProcessor;
+import org.elasticsearch.ingest.ConfigurationUtils;
+import org.elasticsearch.ingest.IngestDocument;
+import org.elasticsearch.ingest.Processor;
+
+/**
+ * The {@code skroutz_greek_stem} ingest processor: splits a string field, or
+ * each string of a list field, with the standard tokenizer, casefolds and stems
+ * the words like {@code skroutz_greek_fold_stem} does, and writes the list of
+ * stems to {@code target_field}.
+ * <p>
+ * Every ingest thread reuses its own tokenizer and filter, so no analysis
+ * chain is built per document.
+ */
+public final class SkroutzGreekStemProcessor extends AbstractProcessor {
+	public static final String TYPE = "skroutz_greek_stem";
+
+	private final String field;
+	private final String targetField;
+	private final boolean ignoreMissing;
+	private final ThreadLocal<Stems> stems;
+
+	SkroutzGreekStemProcessor(String tag, String field, String targetField, boolean ignoreMissing,
+							  ThreadLocal<Stems> stems) {
+		super(tag);
+		this.field = field;
+		this.targetField = targetField;
+		this.ignoreMissing = ignoreMissing;
+		this.stems = stems;
+	}
+
+	String getField() {
+		return field;
+	}
+
+	String getTargetField() {
+		return targetField;
+	}
+
+	boolean isIgnoreMissing() {
+		return ignoreMissing;
+	}
+
+	@Override
+	public IngestDocument execute(IngestDocument document) throws IOException {
+		final Object value = document.getFieldValue(field, Object.class, ignoreMissing);
+		if (value == null && ignoreMissing)
+			return document;
+		if (value == null)
+			throw new IllegalArgumentException("field [" + field + "] is null, cannot stem it");
+
+		final Stems stems = this.stems.get();
+		final List<String> result = new ArrayList<>();
+		if (value instanceof String) {
+			stems.stem((String) value, result);
+		} else if (value instanceof List) {
+			for (Object text : (List<?>) value) {
+				if (text instanceof String)
+					stems.stem((String) text, result);
+				else if (text != null)
+					throw new IllegalArgumentException("field [" + field + "] contains a value of type ["
+							+ text.getClass().getName() + "], only strings can be stemmed");
+			}
+		} else {
+			throw new IllegalArgumentException("field [" + field + "] of type [" + value.getClass().getName()
+					+ "] cannot be stemmed, only strings and lists of strings can");
+		}
+		document.setFieldValue(targetField, result);
+		return document;
+	}
+
+	@Override
+	public String getType() {
+		return TYPE;
+	}
+
+	/**
+	 * The tokenizer and stem filter of a single ingest thread.
+	 */
+	static final class Stems {
+		private final Tokenizer tokenizer = new StandardTokenizer();
+		private final TokenStream stream;
+		private final CharTermAttribute termAtt;
+
+		Stems(StemCache cache, StemmerMetrics metrics) {
+			this.stream = new SkroutzGreekStemTokenFilter(tokenizer, null, null, cache, metrics, 0,
+					SkroutzGreekStemTokenFilter.FOLD);
+			this.termAtt = stream.addAttribute(CharTermAttribute.class);
+		}
+
+		void stem(String text, List<String> stems) throws IOException {
+			tokenizer.setReader(new StringReader(text));
+			try {
+				stream.reset();
+				while (stream.incrementToken())
+					stems.add(termAtt.toString());
+				stream.end();
+			} finally {
+				stream.close();
+			}
+		}
+	}
+
+	public static final class Factory implements Processor.Factory {
+		private final ThreadLocal<Stems> stems;
+
+		public Factory(SkroutzGreekStemmerService stemmerService) {
+			this.stems = ThreadLocal.withInitial(() -> new Stems(stemmerService.cache(), stemmerService.metrics()));
+		}
+
+		@Override
+		public SkroutzGreekStemProcessor create(Map<String, Processor.Factory> processorFactories, String tag,
+												Map<String, Object> config) {
+			final String field = ConfigurationUtils.readStringProperty(TYPE, tag, config, "field");
+			final String targetField = ConfigurationUtils.readStringProperty(TYPE, tag, config, "target_field", field);
+			final boolean ignoreMissing = ConfigurationUtils.readBooleanProperty(TYPE, tag, config, "ignore_missing", false);
+			return new SkroutzGreekStemProcessor(tag, field, targetField, ignoreMissing, stems);
+		}
+	}
+}
@@ -1,22 +1,140 @@
 package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
 
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.ingest.Processor;
 import org.elasticsearch.indices.analysis.AnalysisModule.AnalysisProvider;
+import org.elasticsearch.indices.analysis.PreBuiltCacheFactory.CachingStrategy;
+import org.elasticsearch.index.analysis.PreBuiltAnalyzerProviderFactory;
+import org.elasticsearch.index.analysis.PreConfiguredTokenFilter;
 import org.elasticsearch.index.analysis.TokenFilterFactory;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.AnalysisPlugin;
+import org.elasticsearch.plugins.IngestPlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.ResourceWatcherService;
 
+import org.elasticsearch.index.analysis.SkroutzGreekAnalyzer;
+import org.elasticsearch.index.analysis.SkroutzGreekFoldStemTokenFilterFactory;
+import org.elasticsearch.index.analysis.SkroutzGreekStemTokenFilter;
 import org.elasticsearch.index.analysis.SkroutzGreekStemmerTokenFilterFactory;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
-import static java.util.Collections.singletonMap;
+import static java.util.Collections.unmodifiableMap;
 
-public class SkroutzGreekStemmerPlugin extends Plugin implements AnalysisPlugin {
+public class SkroutzGreekStemmerPlugin extends Plugin implements AnalysisPlugin, ActionPlugin, IngestPlugin {
+	/** the thread pool of the bulk stemming API, one thread per processor by default */
+	public static final String STEM_THREAD_POOL = "skroutz_stem";
+
+	private final SkroutzGreekStemmerService stemmerService;
+
+	public SkroutzGreekStemmerPlugin(Settings settings) {
+		this.stemmerService = new SkroutzGreekStemmerService(settings);
+	}
+
+	@Override
+	public List<Setting<?>> getSettings() {
+		return Arrays.asList(SkroutzGreekStemmerService.CACHE_SIZE_SETTING,
+				SkroutzGreekStemmerService.METRICS_ENABLED_SETTING,
+				RestSkroutzStemBulkAction.MAX_WORDS_SETTING);
+	}
+
+	@Override
+	public Collection<Object> createComponents(Client client, ClusterService clusterService, ThreadPool threadPool,
+											   ResourceWatcherService resourceWatcherService,
+											   ScriptService scriptService, NamedXContentRegistry xContentRegistry,
+											   Environment environment, NodeEnvironment nodeEnvironment,
+											   NamedWriteableRegistry namedWriteableRegistry,
+											   IndexNameExpressionResolver indexNameExpressionResolver) {
+		return Collections.singletonList(stemmerService);
+	}
 
-	// Use singletonMap to register our token filter,
-	// since we only have one in our plugin.
 	@Override
 	public Map<String, AnalysisProvider<TokenFilterFactory>> getTokenFilters() {
-		return singletonMap("skroutz_stem_greek", SkroutzGreekStemmerTokenFilterFactory::new);
+		Map<String, AnalysisProvider<TokenFilterFactory>> filters = new HashMap<>();
+		filters.put("skroutz_stem_greek", (indexSettings, env, name, settings) ->
+				new SkroutzGreekStemmerTokenFilterFactory(indexSettings, env, name, settings,
+						stemmerService.cache(), stemmerService.metrics()));
+		// lowercase, accent and final sigma folding fused with stemming
+		filters.put("skroutz_greek_fold_stem", (indexSettings, env, name, settings) ->
+				new SkroutzGreekFoldStemTokenFilterFactory(indexSettings, env, name, settings,
+						stemmerService.cache(), stemmerService.metrics()));
+		return unmodifiableMap(filters);
+	}
+
+	/**
+	 * The filters without settings, built once per node and shared by every
+	 * index that refers to them without configuring them.
+	 */
+	@Override
+	public List<PreConfiguredTokenFilter> getPreConfiguredTokenFilters() {
+		return Arrays.asList(
+				PreConfiguredTokenFilter.singleton("skroutz_stem_greek", true, input ->
+						new SkroutzGreekStemTokenFilter(input, null, null,
+								stemmerService.cache(), stemmerService.metrics(), 0, 0)),
+				PreConfiguredTokenFilter.singleton("skroutz_greek_fold_stem", true, input ->
+						new SkroutzGreekStemTokenFilter(input, null, null,
+								stemmerService.cache(), stemmerService.metrics(), 0, SkroutzGreekStemTokenFilter.FOLD)));
+	}
+
+	@Override
+	public List<PreBuiltAnalyzerProviderFactory> getPreBuiltAnalyzerProviderFactories() {
+		return Collections.singletonList(new PreBuiltAnalyzerProviderFactory("skroutz_greek", CachingStrategy.ONE,
+				() -> new SkroutzGreekAnalyzer(stemmerService.cache(), stemmerService.metrics())));
+	}
+
+	@Override
+	public Map<String, Processor.Factory> getProcessors(Processor.Parameters parameters) {
+		return Collections.singletonMap(SkroutzGreekStemProcessor.TYPE,
+				new SkroutzGreekStemProcessor.Factory(stemmerService));
+	}
+
+	@Override
+	public List<ActionHandler<? extends ActionRequest, ? extends ActionResponse>> getActions() {
+		return Collections.singletonList(
+				new ActionHandler<>(SkroutzStemmerStatsAction.INSTANCE, TransportSkroutzStemmerStatsAction.class));
+	}
+
+	@Override
+	public List<ExecutorBuilder<?>> getExecutorBuilders(Settings settings) {
+		return Collections.singletonList(new FixedExecutorBuilder(settings, STEM_THREAD_POOL,
+				EsExecutors.numberOfProcessors(settings), 1000, "thread_pool." + STEM_THREAD_POOL));
+	}
+
+	@Override
+	public List<RestHandler> getRestHandlers(Settings settings, RestController restController,
+											 ClusterSettings clusterSettings, IndexScopedSettings indexScopedSettings,
+											 SettingsFilter settingsFilter,
+											 IndexNameExpressionResolver indexNameExpressionResolver,
+											 Supplier<DiscoveryNodes> nodesInCluster) {
+		return Arrays.asList(new RestSkroutzStemmerStatsAction(), new RestSkroutzStemExplainAction(),
+				new RestSkroutzStemBulkAction(settings));
 	}
 }
@@ -0,0 +1,48 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.analysis.StemCache;
+import org.elasticsearch.index.analysis.StemmerMetrics;
+
+/**
+ * Node-wide state of the plugin, shared by the token filters of every index
+ * on the node and reported by the stats API.
+ */
+public class SkroutzGreekStemmerService {
+	/**
+	 * Maximum number of stems kept in the node-wide stem cache; 0 disables it.
+	 */
+	public static final Setting<Integer> CACHE_SIZE_SETTING =
+			Setting.intSetting("skroutz_stemmer.cache.size", 0, 0, Property.NodeScope);
+
+	/**
+	 * Whether the token filters count tokens, rule hits and stemming time.
+	 */
+	public static final Setting<Boolean> METRICS_ENABLED_SETTING =
+			Setting.boolSetting("skroutz_stemmer.metrics.enabled", false, Property.NodeScope);
+
+	private final StemCache cache;
+	private final StemmerMetrics metrics;
+
+	public SkroutzGreekStemmerService(Settings settings) {
+		final int cacheSize = CACHE_SIZE_SETTING.get(settings);
+		this.cache = cacheSize == 0 ? null : new StemCache(cacheSize);
+		this.metrics = METRICS_ENABLED_SETTING.get(settings) ? new StemmerMetrics() : null;
+	}
+
+	/**
+	 * @return the node-wide stem cache, or null if it is disabled
+	 */
+	public StemCache cache() {
+		return cache;
+	}
+
+	/**
+	 * @return the node-wide stemming metrics, or null if they are disabled
+	 */
+	public StemmerMetrics metrics() {
+		return metrics;
+	}
+}
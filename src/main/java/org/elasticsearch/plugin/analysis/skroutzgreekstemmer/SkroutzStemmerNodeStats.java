@@ -0,0 +1,62 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+/**
+ * The stemmer statistics of a single node.
+ */
+public class SkroutzStemmerNodeStats extends BaseNodeResponse implements ToXContentFragment {
+	private final StemCacheStats cacheStats;
+	private final StemmerMetricsStats metricsStats;
+
+	public SkroutzStemmerNodeStats(DiscoveryNode node, StemCacheStats cacheStats,
+								   StemmerMetricsStats metricsStats) {
+		super(node);
+		this.cacheStats = cacheStats;
+		this.metricsStats = metricsStats;
+	}
+
+	public SkroutzStemmerNodeStats(StreamInput in) throws IOException {
+		super(in);
+		this.cacheStats = in.readOptionalWriteable(StemCacheStats::new);
+		this.metricsStats = in.readOptionalWriteable(StemmerMetricsStats::new);
+	}
+
+	@Override
+	public void writeTo(StreamOutput out) throws IOException {
+		super.writeTo(out);
+		out.writeOptionalWriteable(cacheStats);
+		out.writeOptionalWriteable(metricsStats);
+	}
+
+	@Override
+	public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+		builder.field("name", getNode().getName());
+		if (cacheStats != null)
+			cacheStats.toXContent(builder, params);
+		if (metricsStats != null)
+			metricsStats.toXContent(builder, params);
+		return builder;
+	}
+
+	/**
+	 * @return the stem cache counters, or null if the cache is disabled
+	 */
+	public StemCacheStats getCacheStats() {
+		return cacheStats;
+	}
+
+	/**
+	 * @return the stemming metrics, or null if they are disabled
+	 */
+	public StemmerMetricsStats getMetricsStats() {
+		return metricsStats;
+	}
+}
@@ -0,0 +1,13 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import org.elasticsearch.action.ActionType;
+
+public class SkroutzStemmerStatsAction extends ActionType<SkroutzStemmerStatsResponse> {
+
+	public static final SkroutzStemmerStatsAction INSTANCE = new SkroutzStemmerStatsAction();
+	public static final String NAME = "cluster:monitor/skroutz_stemmer/stats";
+
+	private SkroutzStemmerStatsAction() {
+		super(NAME, SkroutzStemmerStatsResponse::new);
+	}
+}
@@ -0,0 +1,17 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+
+public class SkroutzStemmerStatsRequest extends BaseNodesRequest<SkroutzStemmerStatsRequest> {
+
+	public SkroutzStemmerStatsRequest(String... nodesIds) {
+		super(nodesIds);
+	}
+
+	public SkroutzStemmerStatsRequest(StreamInput in) throws IOException {
+		super(in);
+	}
+}
@@ -0,0 +1,47 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.nodes.BaseNodesResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+public class SkroutzStemmerStatsResponse extends BaseNodesResponse<SkroutzStemmerNodeStats>
+		implements ToXContentFragment {
+
+	public SkroutzStemmerStatsResponse(StreamInput in) throws IOException {
+		super(in);
+	}
+
+	public SkroutzStemmerStatsResponse(ClusterName clusterName, List<SkroutzStemmerNodeStats> nodes,
+									   List<FailedNodeException> failures) {
+		super(clusterName, nodes, failures);
+	}
+
+	@Override
+	protected List<SkroutzStemmerNodeStats> readNodesFrom(StreamInput in) throws IOException {
+		return in.readList(SkroutzStemmerNodeStats::new);
+	}
+
+	@Override
+	protected void writeNodesTo(StreamOutput out, List<SkroutzStemmerNodeStats> nodes) throws IOException {
+		out.writeList(nodes);
+	}
+
+	@Override
+	public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+		builder.startObject("nodes");
+		for (SkroutzStemmerNodeStats node : getNodes()) {
+			builder.startObject(node.getNode().getId());
+			node.toXContent(builder, params);
+			builder.endObject();
+		}
+		builder.endObject();
+		return builder;
+	}
+}
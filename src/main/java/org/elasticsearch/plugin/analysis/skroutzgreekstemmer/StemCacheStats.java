@@ -0,0 +1,78 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.io.IOException;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.analysis.StemCache;
+
+/**
+ * A point in time snapshot of a node's {@link StemCache} counters.
+ */
+public class StemCacheStats implements Writeable, ToXContentFragment {
+	private final int capacity;
+	private final int count;
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+
+	public StemCacheStats(StemCache cache) {
+		this.capacity = cache.capacity();
+		this.count = cache.count();
+		this.hits = cache.hits();
+		this.misses = cache.misses();
+		this.evictions = cache.evictions();
+	}
+
+	public StemCacheStats(StreamInput in) throws IOException {
+		this.capacity = in.readVInt();
+		this.count = in.readVInt();
+		this.hits = in.readVLong();
+		this.misses = in.readVLong();
+		this.evictions = in.readVLong();
+	}
+
+	@Override
+	public void writeTo(StreamOutput out) throws IOException {
+		out.writeVInt(capacity);
+		out.writeVInt(count);
+		out.writeVLong(hits);
+		out.writeVLong(misses);
+		out.writeVLong(evictions);
+	}
+
+	@Override
+	public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+		builder.startObject("cache");
+		builder.field("capacity", capacity);
+		builder.field("count", count);
+		builder.field("hits", hits);
+		builder.field("misses", misses);
+		builder.field("evictions", evictions);
+		builder.endObject();
+		return builder;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+}
@@ -0,0 +1,121 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.io.IOException;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContentFragment;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.analysis.SkroutzGreekStemmer;
+import org.elasticsearch.index.analysis.StemmerMetrics;
+
+/**
+ * A point in time snapshot of a node's {@link StemmerMetrics}.
+ */
+public class StemmerMetricsStats implements Writeable, ToXContentFragment {
+	private final long stemmed;
+	private final long overridden;
+	private final long skipped;
+	/** the rule names of {@link StemmerMetrics#stemmer()}, by rule id */
+	private final String[] ruleNames;
+	/** hits by rule, in the order of {@link #ruleNames} */
+	private final long[] ruleHits;
+	/** sampled stemming times by power of two bucket of nanoseconds */
+	private final long[] latencySamples;
+	private final long latencyNanos;
+
+	public StemmerMetricsStats(StemmerMetrics metrics) {
+		this.stemmed = metrics.stemmed();
+		this.overridden = metrics.overridden();
+		this.skipped = metrics.skipped();
+		SkroutzGreekStemmer stemmer = metrics.stemmer();
+		this.ruleNames = new String[stemmer.ruleCount()];
+		this.ruleHits = new long[ruleNames.length];
+		for (int i = 0; i < ruleHits.length; i++) {
+			ruleNames[i] = stemmer.ruleName(i);
+			ruleHits[i] = metrics.ruleHits(i);
+		}
+		this.latencySamples = new long[StemmerMetrics.LATENCY_BUCKETS];
+		for (int i = 0; i < latencySamples.length; i++)
+			latencySamples[i] = metrics.latencySamples(i);
+		this.latencyNanos = metrics.latencyNanos();
+	}
+
+	public StemmerMetricsStats(StreamInput in) throws IOException {
+		this.stemmed = in.readVLong();
+		this.overridden = in.readVLong();
+		this.skipped = in.readVLong();
+		this.ruleNames = in.readStringArray();
+		this.ruleHits = in.readVLongArray();
+		this.latencySamples = in.readVLongArray();
+		this.latencyNanos = in.readVLong();
+	}
+
+	@Override
+	public void writeTo(StreamOutput out) throws IOException {
+		out.writeVLong(stemmed);
+		out.writeVLong(overridden);
+		out.writeVLong(skipped);
+		out.writeStringArray(ruleNames);
+		out.writeVLongArray(ruleHits);
+		out.writeVLongArray(latencySamples);
+		out.writeVLong(latencyNanos);
+	}
+
+	@Override
+	public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+		builder.startObject("tokens");
+		builder.field("stemmed", stemmed);
+		builder.field("overridden", overridden);
+		builder.field("skipped", skipped);
+		builder.endObject();
+
+		builder.startObject("rules");
+		for (int i = 0; i < ruleHits.length; i++)
+			builder.field(ruleNames[i], ruleHits[i]);
+		builder.endObject();
+
+		long samples = 0;
+		for (long count : latencySamples)
+			samples += count;
+		builder.startObject("latency");
+		builder.field("samples", samples);
+		builder.field("total_nanos", latencyNanos);
+		builder.startArray("histogram");
+		for (int i = 0; i < latencySamples.length; i++) {
+			if (latencySamples[i] == 0)
+				continue;
+			builder.startObject();
+			if (i < latencySamples.length - 1)
+				builder.field("lt_nanos", 1L << i);
+			else
+				builder.field("gte_nanos", 1L << (i - 1));
+			builder.field("count", latencySamples[i]);
+			builder.endObject();
+		}
+		builder.endArray();
+		builder.endObject();
+		return builder;
+	}
+
+	public long getStemmed() {
+		return stemmed;
+	}
+
+	public long getOverridden() {
+		return overridden;
+	}
+
+	public long getSkipped() {
+		return skipped;
+	}
+
+	public String getRuleName(int rule) {
+		return ruleNames[rule];
+	}
+
+	public long getRuleHits(int rule) {
+		return ruleHits[rule];
+	}
+}
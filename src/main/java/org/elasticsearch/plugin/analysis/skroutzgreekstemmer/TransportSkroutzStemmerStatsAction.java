@@ -0,0 +1,68 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.index.analysis.StemCache;
+import org.elasticsearch.index.analysis.StemmerMetrics;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class TransportSkroutzStemmerStatsAction extends TransportNodesAction<SkroutzStemmerStatsRequest,
+		SkroutzStemmerStatsResponse, TransportSkroutzStemmerStatsAction.NodeRequest, SkroutzStemmerNodeStats> {
+
+	private final SkroutzGreekStemmerService stemmerService;
+
+	@Inject
+	public TransportSkroutzStemmerStatsAction(ThreadPool threadPool, ClusterService clusterService,
+											  TransportService transportService, ActionFilters actionFilters,
+											  SkroutzGreekStemmerService stemmerService) {
+		super(SkroutzStemmerStatsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+				SkroutzStemmerStatsRequest::new, NodeRequest::new, ThreadPool.Names.MANAGEMENT,
+				SkroutzStemmerNodeStats.class);
+		this.stemmerService = stemmerService;
+	}
+
+	@Override
+	protected SkroutzStemmerStatsResponse newResponse(SkroutzStemmerStatsRequest request,
+													  List<SkroutzStemmerNodeStats> responses,
+													  List<FailedNodeException> failures) {
+		return new SkroutzStemmerStatsResponse(clusterService.getClusterName(), responses, failures);
+	}
+
+	@Override
+	protected NodeRequest newNodeRequest(SkroutzStemmerStatsRequest request) {
+		return new NodeRequest();
+	}
+
+	@Override
+	protected SkroutzStemmerNodeStats newNodeResponse(StreamInput in) throws IOException {
+		return new SkroutzStemmerNodeStats(in);
+	}
+
+	@Override
+	protected SkroutzStemmerNodeStats nodeOperation(NodeRequest request) {
+		final StemCache cache = stemmerService.cache();
+		final StemmerMetrics metrics = stemmerService.metrics();
+		return new SkroutzStemmerNodeStats(clusterService.localNode(),
+				cache == null ? null : new StemCacheStats(cache),
+				metrics == null ? null : new StemmerMetricsStats(metrics));
+	}
+
+	public static class NodeRequest extends BaseNodeRequest {
+
+		public NodeRequest() {
+		}
+
+		public NodeRequest(StreamInput in) throws IOException {
+			super(in);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package org.elasticsearch.index.analysis;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.elasticsearch.test.ESTestCase;
+
+public class ExceptionSetsTest extends ESTestCase {
+	public void testContains() {
+		ExceptionSets.Builder builder = new ExceptionSets.Builder();
+		int first = builder.add("παρ", "στερ", "ν");
+		int second = builder.add("ν", "ρ", "σπι");
+		ExceptionSets sets = builder.build();
+		assertEquals(5, sets.size());
+
+		assertTrue(contains(sets, first, "παρ"));
+		assertFalse(contains(sets, second, "παρ"));
+		assertTrue(contains(sets, first, "ν"));
+		assertTrue(contains(sets, second, "ν"));
+		assertFalse(contains(sets, first, "πα"));
+		assertFalse(contains(sets, first, "παρα"));
+		assertFalse(contains(sets, first, ""));
+
+		// only the given length of the term buffer is the word
+		char[] buffer = "στερεα".toCharArray();
+		assertTrue(sets.contains(first, buffer, 4));
+		assertFalse(sets.contains(first, buffer, buffer.length));
+	}
+
+	/**
+	 * Words with the same String.hashCode() share a bucket, and must still
+	 * get slots of their own.
+	 */
+	public void testSameHashCode() {
+		List<String> words = new ArrayList<>();
+		for (String a : new String[] { "Aa", "BB" })
+			for (String b : new String[] { "Aa", "BB" })
+				for (String c : new String[] { "Aa", "BB" })
+					words.add(a + b + c);
+		assertEquals(1, words.stream().mapToInt(String::hashCode).distinct().count());
+
+		ExceptionSets.Builder builder = new ExceptionSets.Builder();
+		int set = builder.add(words.subList(0, 4).toArray(new String[0]));
+		int other = builder.add(words.subList(4, 8).toArray(new String[0]));
+		ExceptionSets sets = builder.build();
+		assertEquals(8, sets.size());
+		for (int i = 0; i < words.size(); i++) {
+			assertEquals(words.get(i), i < 4, contains(sets, set, words.get(i)));
+			assertEquals(words.get(i), i >= 4, contains(sets, other, words.get(i)));
+		}
+		assertFalse(contains(sets, set, "AaAaAb"));
+	}
+
+	public void testRandomSets() {
+		int count = randomIntBetween(1, 32);
+		ExceptionSets.Builder builder = new ExceptionSets.Builder();
+		List<Set<String>> expected = new ArrayList<>();
+		int[] bits = new int[count];
+		for (int i = 0; i < count; i++) {
+			Set<String> words = new HashSet<>();
+			for (int j = randomIntBetween(0, 100); j > 0; j--)
+				words.add(randomAlphaOfLengthBetween(1, 12));
+			expected.add(words);
+			bits[i] = builder.add(words.toArray(new String[0]));
+		}
+		ExceptionSets sets = builder.build();
+
+		for (int i = 0; i < count; i++) {
+			for (Set<String> words : expected) {
+				for (String word : words)
+					assertEquals(word, expected.get(i).contains(word), contains(sets, bits[i], word));
+			}
+			for (int j = 0; j < 100; j++) {
+				String word = randomAlphaOfLengthBetween(1, 12);
+				assertEquals(word, expected.get(i).contains(word), contains(sets, bits[i], word));
+			}
+		}
+	}
+
+	private static boolean contains(ExceptionSets sets, int set, String word) {
+		return sets.contains(set, word.toCharArray(), word.length());
+	}
+}
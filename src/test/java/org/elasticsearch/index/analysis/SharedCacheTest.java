@@ -0,0 +1,42 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.test.ESTestCase;
+
+public class SharedCacheTest extends ESTestCase {
+	public void testSharedByKeyAndVersion() throws IOException {
+		SharedCache<String, Object> cache = new SharedCache<>();
+		AtomicInteger loads = new AtomicInteger();
+		SharedCache.Loader<String, Object> loader = key -> {
+			loads.incrementAndGet();
+			return new Object();
+		};
+
+		Object first = cache.get("a", 1, loader);
+		assertSame(first, cache.get("a", 1, loader));
+		assertEquals(1, loads.get());
+
+		// another version replaces the entry, the old value stays valid for
+		// whoever holds it
+		Object second = cache.get("a", 2, loader);
+		assertNotSame(first, second);
+		assertSame(second, cache.get("a", 2, loader));
+		assertNotSame(first, cache.get("b", 2, loader));
+		assertEquals(3, loads.get());
+		assertEquals(2, cache.size());
+	}
+
+	public void testReleasedWhenUnused() throws Exception {
+		SharedCache<String, Object> cache = new SharedCache<>();
+		Object kept = cache.get("kept", null, key -> new Object());
+		cache.get("dropped", null, key -> new Object());
+
+		assertBusy(() -> {
+			System.gc();
+			assertEquals(1, cache.size());
+		});
+		assertSame(kept, cache.get("kept", null, key -> new Object()));
+	}
+}
@@ -1,20 +1,409 @@
 package org.elasticsearch.index.analysis;
 
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.el.GreekLowerCaseFilter;
+import org.apache.lucene.analysis.miscellaneous.StemmerOverrideFilter.StemmerOverrideMap;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.plugin.analysis.skroutzgreekstemmer.SkroutzGreekStemmerPlugin;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import static org.apache.lucene.analysis.BaseTokenStreamTestCase.assertTokenStreamContents;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.instanceOf;
 
 public class SimpleSkroutzGreekStemmerAnalysisTest extends ESTestCase {
 	public void testSkroutzGreekStemmerAnalysis() throws IOException {
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.build();
 		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
-				Settings.EMPTY, new SkroutzGreekStemmerPlugin());
+				settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY));
 
-		TokenFilterFactory filterFactory = analysis.tokenFilter.get("skroutz_stem_greek");
+		TokenFilterFactory filterFactory = analysis.tokenFilter.get("stem_greek");
 		assertThat(filterFactory, instanceOf(SkroutzGreekStemmerTokenFilterFactory.class));
 	}
+
+	public void testPreConfiguredFilterAndAnalyzer() throws IOException {
+		SkroutzGreekStemmerPlugin plugin = new SkroutzGreekStemmerPlugin(Settings.EMPTY);
+		TestAnalysis first = createTestAnalysis(new Index("first", "_na_"), Settings.EMPTY, plugin);
+		TestAnalysis second = createTestAnalysis(new Index("second", "_na_"), Settings.EMPTY, plugin);
+
+		// every index gets the same filters and analyzer, without settings
+		for (TestAnalysis analysis : Arrays.asList(first, second)) {
+			assertAnalyzesTo(analysis.tokenFilter.get("skroutz_stem_greek"), "κουρευτικεσ μηχανεσ",
+					new String[] { "κουρευτ", "μηχαν" });
+			assertAnalyzesTo(analysis.tokenFilter.get("skroutz_greek_fold_stem"), "Κουρευτικές ΜΗΧΑΝΈΣ",
+					new String[] { "κουρευτ", "μηχαν" });
+			assertTokenStreamContents(analysis.indexAnalyzers.get("skroutz_greek").tokenStream("title",
+					"Κουρευτικές ΜΗΧΑΝΈΣ, iPhone"), new String[] { "κουρευτ", "μηχαν", "iphone" });
+			assertEquals(new BytesRef("μηχανεσ"),
+					analysis.indexAnalyzers.get("skroutz_greek").normalize("title", "ΜΗΧΑΝΈΣ"));
+		}
+	}
+
+	public void testStemExceptions() throws IOException {
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.putList("index.analysis.filter.stem_greek.stem_exceptions",
+						"ρολογια => ρολ", "κρεμασ, κρεμεσ => κρεμα")
+				.build();
+		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
+				settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY));
+
+		assertAnalyzesTo(analysis.tokenFilter.get("stem_greek"),
+				"ρολογια κρεμασ κρεμεσ κουρευτικεσ",
+				new String[] { "ρολ", "κρεμα", "κρεμα", "κουρευτ" });
+	}
+
+	public void testInvalidStemExceptions() {
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.putList("index.analysis.filter.stem_greek.stem_exceptions", "ρολογια ρολ")
+				.build();
+
+		expectThrows(IllegalArgumentException.class, () -> createTestAnalysis(
+				new Index("test", "_na_"), settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY)));
+	}
+
+	public void testSkipDigitsAndGreekOnly() throws IOException {
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.skip_digits.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.skip_digits.skip_digits", true)
+				.put("index.analysis.filter.greek_only.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.greek_only.greek_only", true)
+				.build();
+		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
+				settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY));
+
+		String text = "μηχανεσ 4οσ usb3 iphone";
+		assertAnalyzesTo(analysis.tokenFilter.get("stem_greek"), text,
+				new String[] { "μηχαν", "4", "usb3", "iphone" });
+		assertAnalyzesTo(analysis.tokenFilter.get("skip_digits"), text,
+				new String[] { "μηχαν", "4οσ", "usb3", "iphone" });
+		assertAnalyzesTo(analysis.tokenFilter.get("greek_only"), text,
+				new String[] { "μηχαν", "4", "usb3", "iphone" });
+	}
+
+	public void testPreserveOriginal() throws IOException {
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.stem_greek.preserve_original", true)
+				.putList("index.analysis.filter.stem_greek.stem_exceptions", "ρολογια => ρολ")
+				.build();
+		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
+				settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY));
+
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader("κουρευτικεσ usb3 ρολογια μηχανεσ"));
+		assertTokenStreamContents(analysis.tokenFilter.get("stem_greek").create(tokenizer),
+				new String[] { "κουρευτικεσ", "κουρευτ", "usb3", "ρολογια", "ρολ", "μηχανεσ", "μηχαν" },
+				new int[] { 1, 0, 1, 1, 0, 1, 0 });
+	}
+
+	public void testNormalizer() throws IOException {
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.normalizer.stem_normalizer.type", "custom")
+				.putList("index.analysis.normalizer.stem_normalizer.filter", "stem_greek")
+				.put("index.analysis.normalizer.fold_stem_normalizer.type", "custom")
+				.putList("index.analysis.normalizer.fold_stem_normalizer.filter", "skroutz_greek_fold_stem")
+				.build();
+		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
+				settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY));
+
+		assertEquals(new BytesRef("κουρευτ"),
+				analysis.indexAnalyzers.getNormalizer("stem_normalizer").normalize("attribute", "κουρευτικεσ"));
+		assertEquals(new BytesRef("κουρευτ"),
+				analysis.indexAnalyzers.getNormalizer("fold_stem_normalizer").normalize("attribute", "Κουρευτικές"));
+	}
+
+	/**
+	 * Multi-term aware filters also normalize the terms of prefix, wildcard
+	 * and fuzzy queries on text fields, so these terms get stemmed.
+	 */
+	public void testMultiTermQueriesOnTextFields() throws IOException {
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.analyzer.configured.tokenizer", "standard")
+				.putList("index.analysis.analyzer.configured.filter", "stem_greek")
+				.put("index.analysis.analyzer.pre_configured.tokenizer", "standard")
+				.putList("index.analysis.analyzer.pre_configured.filter", "skroutz_stem_greek")
+				.put("index.analysis.analyzer.fold.tokenizer", "standard")
+				.putList("index.analysis.analyzer.fold.filter", "skroutz_greek_fold_stem")
+				.build();
+		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
+				settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY));
+
+		assertEquals(new BytesRef("μηχαν"), analysis.indexAnalyzers.get("configured").normalize("title", "μηχανεσ"));
+		assertEquals(new BytesRef("μηχαν"), analysis.indexAnalyzers.get("pre_configured").normalize("title", "μηχανεσ"));
+		assertEquals(new BytesRef("μηχαν"), analysis.indexAnalyzers.get("fold").normalize("title", "ΜΗΧΑΝΈΣ"));
+	}
+
+	public void testFoldStemMatchesLowerCaseAndStem() throws IOException {
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.fold_stem.type", "skroutz_greek_fold_stem")
+				.build();
+		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
+				settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY));
+		TokenFilterFactory filterFactory = analysis.tokenFilter.get("fold_stem");
+		assertThat(filterFactory, instanceOf(SkroutzGreekFoldStemTokenFilterFactory.class));
+
+		StringBuilder text = new StringBuilder(
+				"Κουρευτικές ΜΗΧΑΝΈΣ Ϊόντα ΠΑΠΟΎΤΣΙΑ iPhone 4K Προβολείς ΰψος ΐδιος");
+		for (int i = 0; i < 1000; i++) {
+			text.append(' ');
+			int length = randomIntBetween(1, 12);
+			for (int j = 0; j < length; j++)
+				text.appendCodePoint(randomIntBetween(0x0370, 0x03FF));
+		}
+
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(text.toString()));
+		List<String> expected = terms(new SkroutzGreekStemTokenFilter(new GreekLowerCaseFilter(tokenizer)));
+
+		tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(text.toString()));
+		assertEquals(expected, terms(filterFactory.create(tokenizer)));
+	}
+
+	public void testNodeStemCache() throws IOException {
+		Settings nodeSettings = Settings.builder()
+				.put("skroutz_stemmer.cache.size", 32)
+				.build();
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.putList("index.analysis.filter.stem_greek.stem_exceptions", "ρολογια => ρολ")
+				.build();
+		SkroutzGreekStemmerPlugin plugin = new SkroutzGreekStemmerPlugin(nodeSettings);
+		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"), settings, plugin);
+
+		String[] expected = new String[] {"κουρευτ", "μηχαν", "ρολ", "κουρευτ", "μηχαν"};
+		assertAnalyzesTo(analysis.tokenFilter.get("stem_greek"),
+				"κουρευτικεσ μηχανεσ ρολογια κουρευτικεσ μηχανεσ", expected);
+		// a second pass is served from the cache, exceptions still win
+		assertAnalyzesTo(analysis.tokenFilter.get("stem_greek"),
+				"κουρευτικεσ μηχανεσ ρολογια κουρευτικεσ μηχανεσ", expected);
+	}
+
+	public void testStemMemo() throws IOException {
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.stem_greek.memo_size", 4)
+				.build();
+		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
+				settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY));
+		TokenFilterFactory filterFactory = analysis.tokenFilter.get("stem_greek");
+
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			text.append(' ');
+			// few distinct words, so that the small memo both hits and collides
+			int length = randomIntBetween(1, 8);
+			for (int j = 0; j < length; j++)
+				text.appendCodePoint(randomFrom('α', 'ε', 'ι', 'σ', 'ο', 'ν'));
+		}
+
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(text.toString()));
+		List<String> expected = terms(new SkroutzGreekStemTokenFilter(tokenizer));
+
+		// the memo outlives reset(), across documents of the same stream
+		tokenizer = new WhitespaceTokenizer();
+		TokenStream stream = filterFactory.create(tokenizer);
+		for (int i = 0; i < 3; i++) {
+			tokenizer.setReader(new StringReader(text.toString()));
+			assertEquals(expected, terms(stream));
+		}
+	}
+
+	public void testInvalidMemoSize() {
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.stem_greek.memo_size", -1)
+				.build();
+		expectThrows(IllegalArgumentException.class, () -> createTestAnalysis(
+				new Index("test", "_na_"), settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY)));
+
+		Settings tooLarge = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.stem_greek.memo_size", 100000000)
+				.build();
+		IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> createTestAnalysis(
+				new Index("test", "_na_"), tooLarge, new SkroutzGreekStemmerPlugin(Settings.EMPTY)));
+		assertThat(e.getMessage(), containsString("[memo_size] must be between 0 and 65536"));
+	}
+
+	public void testMemoSizeRoundedToPowerOfTwo() throws IOException {
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.stem_greek.memo_size", 100)
+				.put("index.analysis.filter.max.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.max.memo_size", SkroutzGreekStemmerTokenFilterFactory.MAX_MEMO_SIZE)
+				.build();
+		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
+				settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY));
+
+		assertEquals(128, ((SkroutzGreekStemmerTokenFilterFactory) analysis.tokenFilter.get("stem_greek")).memoSize);
+		assertEquals(65536, ((SkroutzGreekStemmerTokenFilterFactory) analysis.tokenFilter.get("max")).memoSize);
+	}
+
+	public void testCustomRules() throws IOException {
+		Path rules = createTempDir().resolve("rules.txt");
+		Files.write(rules, Arrays.asList(
+				"min-length 3",
+				"rule plural",
+				"  if suffix εσ: cut 2",
+				"  elif suffix οι: cut 2 append ο"), StandardCharsets.UTF_8);
+
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.stem_greek.rules_path", rules.toString())
+				.put("index.analysis.filter.fold_stem.type", "skroutz_greek_fold_stem")
+				.put("index.analysis.filter.fold_stem.rules_path", rules.toString())
+				.build();
+		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
+				settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY));
+
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader("μηχανεσ φιλοι κουρευτικη"));
+		assertTokenStreamContents(analysis.tokenFilter.get("stem_greek").create(tokenizer),
+				new String[] { "μηχαν", "φιλο", "κουρευτικη" });
+
+		tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader("ΜΗΧΑΝΈΣ Φίλοι"));
+		assertTokenStreamContents(analysis.tokenFilter.get("fold_stem").create(tokenizer),
+				new String[] { "μηχαν", "φιλο" });
+	}
+
+	public void testEditedRules() throws IOException {
+		Path rules = createTempDir().resolve("rules.txt");
+		Files.write(rules, Arrays.asList("rule plural", "  if suffix εσ: cut 2"), StandardCharsets.UTF_8);
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.stem_greek.rules_path", rules.toString())
+				.build();
+		SkroutzGreekStemmerPlugin plugin = new SkroutzGreekStemmerPlugin(Settings.EMPTY);
+		TokenFilterFactory first = createTestAnalysis(new Index("first", "_na_"), settings, plugin)
+				.tokenFilter.get("stem_greek");
+
+		// the same rules in another file share the compiled stemmer
+		Path copy = rules.resolveSibling("copy.txt");
+		Files.copy(rules, copy);
+		TokenFilterFactory second = createTestAnalysis(new Index("second", "_na_"), Settings.builder()
+				.put(settings)
+				.put("index.analysis.filter.stem_greek.rules_path", copy.toString())
+				.build(), plugin).tokenFilter.get("stem_greek");
+		assertSame(((SkroutzGreekStemmerTokenFilterFactory) first).stemmer,
+				((SkroutzGreekStemmerTokenFilterFactory) second).stemmer);
+
+		Files.write(rules, Arrays.asList("rule plural", "  if suffix εσ: cut 1"), StandardCharsets.UTF_8);
+		TokenFilterFactory third = createTestAnalysis(new Index("third", "_na_"), settings, plugin)
+				.tokenFilter.get("stem_greek");
+
+		assertAnalyzesTo(third, "μηχανεσ", new String[] { "μηχανε" });
+		// the index created before the edit keeps its rules
+		assertAnalyzesTo(first, "μηχανεσ", new String[] { "μηχαν" });
+	}
+
+	public void testInvalidRules() throws IOException {
+		Path rules = createTempDir().resolve("rules.txt");
+		Files.write(rules, Arrays.asList("rule plural", "  if suffix εσ: jump 2"), StandardCharsets.UTF_8);
+
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.stem_greek.rules_path", rules.toString())
+				.build();
+		IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> createTestAnalysis(
+				new Index("test", "_na_"), settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY)));
+		assertThat(e.getMessage(), containsString("Invalid stem rule at line 2"));
+	}
+
+	public void testStemmerMetrics() throws IOException {
+		String text = "κουρευτικεσ μηχανεσ ρολογια usb3 4οσ μηχανεσ";
+		StemmerMetrics metrics = new StemmerMetrics();
+		StemmerOverrideMap exceptions = SkroutzGreekStemmerTokenFilterFactory.compileExceptions(
+				Collections.singletonList("ρολογια => ρολ"));
+
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(text));
+		List<String> expected = terms(new SkroutzGreekStemTokenFilter(tokenizer, exceptions, null, null,
+				null, 0, SkroutzGreekStemTokenFilter.SKIP_DIGITS));
+
+		tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(text));
+		assertEquals(expected, terms(new SkroutzGreekStemTokenFilter(tokenizer, exceptions, null, null,
+				metrics, 0, SkroutzGreekStemTokenFilter.SKIP_DIGITS)));
+
+		assertEquals(3, metrics.stemmed());
+		assertEquals(1, metrics.overridden());
+		assertEquals(2, metrics.skipped());
+		long ruleHits = 0;
+		for (int i = 0; i < SkroutzGreekStemmer.INSTANCE.ruleCount(); i++)
+			ruleHits += metrics.ruleHits(i);
+		assertThat(ruleHits, greaterThanOrEqualTo(3L));
+	}
+
+	/**
+	 * The timed tokens are stemmed without the rule listener, and their rules
+	 * are still counted, like those of every other token.
+	 */
+	public void testStemmerMetricsSampling() throws IOException {
+		String[] words = { "κουρευτικεσ", "μηχανεσ", "ρολογια", "παπουτσια" };
+		StringBuilder text = new StringBuilder();
+		long[] expected = new long[SkroutzGreekStemmer.INSTANCE.ruleCount()];
+		int tokens = (StemmerMetrics.SAMPLE_MASK + 1) * 3;
+		for (int i = 0; i < tokens; i++) {
+			String word = randomFrom(words);
+			text.append(word).append(' ');
+			char[] token = word.toCharArray();
+			SkroutzGreekStemmer.INSTANCE.stem(token, token.length, (rule, lenBefore, lenAfter) -> expected[rule]++);
+		}
+
+		StemmerMetrics metrics = new StemmerMetrics();
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(text.toString()));
+		terms(new SkroutzGreekStemTokenFilter(tokenizer, null, null, null, metrics, 0, 0));
+
+		long samples = 0;
+		for (int i = 0; i < StemmerMetrics.LATENCY_BUCKETS; i++)
+			samples += metrics.latencySamples(i);
+		assertEquals(3, samples);
+		for (int i = 0; i < SkroutzGreekStemmer.INSTANCE.ruleCount(); i++)
+			assertEquals(SkroutzGreekStemmer.INSTANCE.ruleName(i), expected[i], metrics.ruleHits(i));
+	}
+
+	private static List<String> terms(TokenStream stream) throws IOException {
+		List<String> terms = new ArrayList<>();
+		CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+		stream.reset();
+		while (stream.incrementToken())
+			terms.add(termAtt.toString());
+		stream.end();
+		stream.close();
+		return terms;
+	}
+
+	private static void assertAnalyzesTo(TokenFilterFactory filterFactory,
+										 String text, String[] expected) throws IOException {
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader(text));
+		assertTokenStreamContents(filterFactory.create(tokenizer), expected);
+	}
 }
@@ -0,0 +1,121 @@
+package org.elasticsearch.index.analysis;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.WordlistLoader;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.miscellaneous.StemmerOverrideFilter.StemmerOverrideMap;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.fst.FST;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.plugin.analysis.skroutzgreekstemmer.SkroutzGreekStemmerPlugin;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.lucene.analysis.BaseTokenStreamTestCase.assertTokenStreamContents;
+import static org.hamcrest.Matchers.containsString;
+
+public class SkroutzGreekStemDictionaryTest extends ESTestCase {
+	public void testDictionaryMatchesStemmer() throws IOException {
+		List<String> lines = WordlistLoader.getLines(
+				getClass().getResourceAsStream("/stemming_samples.txt"),
+				StandardCharsets.UTF_8);
+		List<String> words = new ArrayList<>();
+		for (String line : lines)
+			words.add(line.split(",")[0]);
+
+		Path file = createTempDir().resolve("stems.fst");
+		SkroutzGreekStemDictionary.build(words, file);
+		StemmerOverrideMap dictionary = SkroutzGreekStemDictionary.open(file);
+
+		FST.BytesReader reader = dictionary.getBytesReader();
+		FST.Arc<BytesRef> arc = new FST.Arc<>();
+		for (String line : lines) {
+			String[] sample = line.split(",");
+			char[] word = sample[0].toCharArray();
+			BytesRef stem = dictionary.get(word, word.length, arc, reader);
+			assertNotNull(sample[0], stem);
+			assertEquals(sample[0], sample[1], stem.utf8ToString());
+		}
+	}
+
+	public void testFilterFallsBackToRules() throws IOException {
+		Path file = createTempDir().resolve("stems.fst");
+		SkroutzGreekStemDictionary.build(Arrays.asList("κουρευτικεσ", "μηχανεσ"), file);
+
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.stem_greek.dictionary_path", file.toString())
+				.build();
+		TestAnalysis analysis = createTestAnalysis(new Index("test", "_na_"),
+				settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY));
+
+		Tokenizer tokenizer = new WhitespaceTokenizer();
+		tokenizer.setReader(new StringReader("κουρευτικεσ μηχανεσ κουρευτικη"));
+		assertTokenStreamContents(analysis.tokenFilter.get("stem_greek").create(tokenizer),
+				new String[] { "κουρευτ", "μηχαν", "κουρευτ" });
+	}
+
+	public void testRebuiltDictionary() throws IOException {
+		Path dir = createTempDir();
+		Path file = dir.resolve("stems.fst");
+		SkroutzGreekStemDictionary.build(Arrays.asList("κουρευτικεσ"), file);
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.stem_greek.dictionary_path", file.toString())
+				.build();
+		SkroutzGreekStemmerPlugin plugin = new SkroutzGreekStemmerPlugin(Settings.EMPTY);
+		SkroutzGreekStemmerTokenFilterFactory first = factory(createTestAnalysis(new Index("first", "_na_"),
+				settings, plugin));
+		assertSame(first.dictionary, factory(createTestAnalysis(new Index("second", "_na_"),
+				settings, plugin)).dictionary);
+
+		// rebuilt under another name and moved over the old file
+		Path rebuilt = dir.resolve("stems.fst.new");
+		SkroutzGreekStemDictionary.build(Arrays.asList("κουρευτικεσ", "μηχανεσ"), rebuilt);
+		Files.move(rebuilt, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		SkroutzGreekStemmerTokenFilterFactory third = factory(createTestAnalysis(new Index("third", "_na_"),
+				settings, plugin));
+
+		assertNotSame(first.dictionary, third.dictionary);
+		assertNotNull(lookup(third.dictionary, "μηχανεσ"));
+		// the indices opened before keep reading the old file
+		assertNull(lookup(first.dictionary, "μηχανεσ"));
+		assertEquals("κουρευτ", lookup(first.dictionary, "κουρευτικεσ"));
+	}
+
+	public void testDictionaryWithCustomRules() throws IOException {
+		Path dir = createTempDir();
+		Path file = dir.resolve("stems.fst");
+		SkroutzGreekStemDictionary.build(Arrays.asList("κουρευτικεσ"), file);
+		Path rules = dir.resolve("rules.txt");
+		Files.write(rules, Arrays.asList("rule plural", "  if suffix εσ: cut 2"), StandardCharsets.UTF_8);
+
+		Settings settings = Settings.builder()
+				.put("index.analysis.filter.stem_greek.type", "skroutz_stem_greek")
+				.put("index.analysis.filter.stem_greek.dictionary_path", file.toString())
+				.put("index.analysis.filter.stem_greek.rules_path", rules.toString())
+				.build();
+		IllegalArgumentException e = expectThrows(IllegalArgumentException.class, () -> createTestAnalysis(
+				new Index("test", "_na_"), settings, new SkroutzGreekStemmerPlugin(Settings.EMPTY)));
+		assertThat(e.getMessage(), containsString("[dictionary_path] cannot be used with [rules_path]"));
+	}
+
+	private static SkroutzGreekStemmerTokenFilterFactory factory(TestAnalysis analysis) {
+		return (SkroutzGreekStemmerTokenFilterFactory) analysis.tokenFilter.get("stem_greek");
+	}
+
+	private static String lookup(StemmerOverrideMap dictionary, String word) throws IOException {
+		BytesRef stem = dictionary.get(word.toCharArray(), word.length(), new FST.Arc<>(), dictionary.getBytesReader());
+		return stem == null ? null : stem.utf8ToString();
+	}
+}
@@ -1,6 +1,21 @@
 package org.elasticsearch.index.analysis;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.sun.management.ThreadMXBean;
+import org.apache.lucene.analysis.WordlistLoader;
 import org.testng.Assert;
+import org.testng.SkipException;
 import org.testng.annotations.Test;
 
 public class SkroutzGreekStemmerTest {
@@ -27,6 +42,9 @@ public class SkroutzGreekStemmerTest {
       "παρε", "παρε", "στερε", "στερε", "στερε", "φασ", "φασ", "γραμμα", "διχτ",
       "πασχα", "πασχα", "πασχα", "πασχ"};
 
+  /** the seed fuzzed by default, see {@link #testDifferentialFuzzing()} */
+  private static final long FUZZ_SEED = 0x5eedL;
+
   private char[] token;
   private String stem;
   private int tokenLength, stemLength;
@@ -43,4 +61,299 @@ public class SkroutzGreekStemmerTest {
     }
   }
 
-}
\ No newline at end of file
+  /**
+   * Every word of stemming_samples.txt must still produce its recorded stem;
+   * on failure the changed samples are listed by rule, see
+   * {@link UpdateStemmingSamples}.
+   */
+  @Test
+  public void testStemmingSamples() throws IOException {
+    List<String> lines = WordlistLoader.getLines(
+        getClass().getResourceAsStream("/stemming_samples.txt"),
+        StandardCharsets.UTF_8);
+
+    List<UpdateStemmingSamples.Change> changes = UpdateStemmingSamples.diff(lines);
+    if (!changes.isEmpty()) {
+      ByteArrayOutputStream report = new ByteArrayOutputStream();
+      UpdateStemmingSamples.report(changes, lines.size(),
+          new PrintStream(report, true, StandardCharsets.UTF_8.name()));
+      Assert.fail(report.toString(StandardCharsets.UTF_8.name()));
+    }
+  }
+
+  /**
+   * The instrumented stem() must produce the same stems, and report a chain
+   * of rules that leads from the word to its stem; every rule it reports
+   * changed the word.
+   */
+  @Test
+  public void testStemWithRuleListener() throws IOException {
+    List<String> lines = WordlistLoader.getLines(
+        getClass().getResourceAsStream("/stemming_samples.txt"),
+        StandardCharsets.UTF_8);
+
+    for (String line : lines) {
+      String[] sample = line.split(",");
+      token = sample[0].toCharArray();
+      final int[] len = { token.length };
+      final String[] term = { sample[0] };
+      stemLength = stemmer.stem(token, token.length, (rule, lenBefore, lenAfter) -> {
+        Assert.assertEquals(lenBefore, len[0], sample[0]);
+        String after = new String(token, 0, lenAfter);
+        Assert.assertNotEquals(after, term[0], sample[0] + " " + stemmer.ruleName(rule));
+        len[0] = lenAfter;
+        term[0] = after;
+      });
+
+      Assert.assertEquals(new String(token, 0, stemLength), sample[1], sample[0]);
+      Assert.assertEquals(len[0], stemLength, sample[0]);
+    }
+
+    // rule5b leaves τετραδιο as it is, and rewrites παλιο to παλαι in place
+    Assert.assertFalse(ruleNames("τετραδιο").contains("rule5b"));
+    Assert.assertFalse(ruleNames("τετραδια").contains("rule5b"));
+    Assert.assertTrue(ruleNames("παλιο").contains("rule5b"));
+  }
+
+  private List<String> ruleNames(String word) {
+    List<String> names = new ArrayList<>();
+    for (StemTrace.Step step : StemTrace.trace(stemmer, word, false).steps())
+      names.add(step.rule());
+    return names;
+  }
+
+  @Test
+  public void testStemTrace() {
+    StemTrace trace = StemTrace.trace(stemmer, "ΜΗΧΑΝΈΣ", true);
+    Assert.assertEquals(trace.word(), "ΜΗΧΑΝΈΣ");
+    Assert.assertEquals(trace.stem(), "μηχαν");
+    Assert.assertFalse(trace.steps().isEmpty());
+
+    int length = "μηχανεσ".length();
+    for (StemTrace.Step step : trace.steps()) {
+      Assert.assertEquals(step.lengthBefore(), length, step.rule());
+      Assert.assertEquals(step.term().length(), step.lengthAfter(), step.rule());
+      length = step.lengthAfter();
+    }
+    Assert.assertEquals(trace.steps().get(trace.steps().size() - 1).term(), "μηχαν");
+
+    // untouched words have no steps
+    Assert.assertTrue(StemTrace.trace(stemmer, "usb", false).steps().isEmpty());
+  }
+
+  /**
+   * Traces and metrics name and count the rules of the stemmer they were
+   * given, here a rule file with more rules than the built-in stemmer.
+   */
+  @Test
+  public void testRuleFileTraceAndMetrics() throws IOException {
+    StringBuilder file = new StringBuilder("min-length 3\n");
+    for (int i = 0; i < 30; i++)
+      file.append("rule keep").append(i).append("\nif word ζζζ: keep\n");
+    file.append("rule plural\nif suffix εσ: cut 2\n");
+    SkroutzGreekRuleStemmer rules = SkroutzGreekRuleStemmer.compile(new StringReader(file.toString()));
+    Assert.assertEquals(rules.ruleCount(), 31);
+    Assert.assertEquals(rules.ruleName(30), "plural");
+
+    StemTrace trace = StemTrace.trace(rules, "μηχανεσ", false);
+    Assert.assertEquals(trace.stem(), "μηχαν");
+    Assert.assertEquals(trace.steps().size(), 1);
+    Assert.assertEquals(trace.steps().get(0).rule(), "plural");
+
+    StemmerMetrics metrics = new StemmerMetrics(rules);
+    char[] word = "μηχανεσ".toCharArray();
+    rules.stem(word, word.length, metrics);
+    Assert.assertEquals(metrics.ruleHits(30), 1);
+  }
+
+  /**
+   * A rule file skips the rules whose first cases cannot match the word, but
+   * still runs the ones triggered by a word list, a prefix or an else, past
+   * the first 64 rules too.
+   */
+  @Test
+  public void testRuleFileSkipsRules() throws IOException {
+    StringBuilder file = new StringBuilder("min-length 3\n");
+    for (int i = 0; i < 70; i++)
+      file.append("rule plural").append(i).append("\nif suffix ζεσ: cut 2\n");
+    file.append("rule word\nif word μηχανεσ: cut 1\n");
+    file.append("rule prefix\nif prefix μη: cut 1\n");
+    file.append("rule length\nif length > 20: cut 1\nelse: append ια\n");
+    file.append("rule late\nif suffix ια: cut 2\n");
+    SkroutzGreekRuleStemmer rules = SkroutzGreekRuleStemmer.compile(new StringReader(file.toString()));
+
+    StemTrace trace = StemTrace.trace(rules, "μηχανεσ", false);
+    Assert.assertEquals(trace.stem(), "μηχαν");
+    List<String> steps = new ArrayList<>();
+    for (StemTrace.Step step : trace.steps())
+      steps.add(step.rule());
+    Assert.assertEquals(steps, Arrays.asList("word", "prefix", "length", "late"));
+
+    trace = StemTrace.trace(rules, "βαζεσ", false);
+    Assert.assertEquals(trace.stem(), "βαζ");
+    Assert.assertEquals(trace.steps().get(0).rule(), "plural0");
+  }
+
+  /**
+   * stem() must not allocate per token, even when handed a term buffer that
+   * is larger than the token, as CharTermAttribute does.
+   */
+  @Test
+  public void testStemDoesNotAllocate() throws IOException {
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    if (!threads.isThreadAllocatedMemorySupported())
+      throw new SkipException("thread allocation accounting is not supported");
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    List<String> lines = WordlistLoader.getLines(
+        getClass().getResourceAsStream("/stemming_samples.txt"),
+        StandardCharsets.UTF_8);
+    char[][] samples = new char[lines.size()][];
+    for (int i = 0; i < samples.length; i++)
+      samples[i] = lines.get(i).split(",")[0].toCharArray();
+    char[] buffer = new char[64];
+
+    long threadId = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    long overhead = threads.getThreadAllocatedBytes(threadId) - before;
+
+    before = threads.getThreadAllocatedBytes(threadId);
+    for (char[] sample : samples) {
+      System.arraycopy(sample, 0, buffer, 0, sample.length);
+      stemmer.stem(buffer, sample.length);
+    }
+    long allocated = threads.getThreadAllocatedBytes(threadId) - before - overhead;
+
+    Assert.assertTrue(allocated <= 0, "stem() allocated " + allocated + " bytes");
+  }
+
+  /**
+   * stem() only runs the rules that {@link SkroutzGreekStemmer#ruleMask} lets
+   * through. Every rule left out must leave the token as it is, and the
+   * stems must be those of {@link ReferenceSkroutzGreekStemmer}, which runs
+   * every rule, through both stem() and the instrumented stem().
+   * Checked on the samples and on words spliced from them, and on every
+   * ending of those words.
+   */
+  @Test
+  public void testSkippedRulesCannotApply() throws IOException {
+    List<String> lines = WordlistLoader.getLines(
+        getClass().getResourceAsStream("/stemming_samples.txt"),
+        StandardCharsets.UTF_8);
+    ReferenceSkroutzGreekStemmer reference = new ReferenceSkroutzGreekStemmer();
+    Random random = new Random(0);
+    for (int i = 0; i < lines.size() + 50000; i++) {
+      String word;
+      if (i < lines.size()) {
+        word = lines.get(i).split(",")[0];
+      } else {
+        String head = lines.get(random.nextInt(lines.size())).split(",")[0];
+        String tail = lines.get(random.nextInt(lines.size())).split(",")[0];
+        word = head.substring(0, random.nextInt(head.length() + 1)) + tail.substring(random.nextInt(tail.length() + 1));
+      }
+
+      for (int start = 0; start < word.length(); start++) {
+        char[] token = word.substring(start).toCharArray();
+        int mask = SkroutzGreekStemmer.ruleMask(token, token.length);
+        for (int rule = 0; rule < stemmer.ruleCount(); rule++) {
+          if ((mask & 1 << rule) != 0)
+            continue;
+          char[] copy = token.clone();
+          Assert.assertEquals(stemmer.stemRule(rule, copy, copy.length), copy.length,
+              stemmer.ruleName(rule) + " " + new String(token));
+          Assert.assertEquals(copy, token, stemmer.ruleName(rule) + " " + new String(token));
+        }
+
+        String expected = StemmerFuzzer.stem(reference, new String(token));
+        char[] instrumented = token.clone();
+        int instrumentedLength = stemmer.stem(instrumented, instrumented.length, (rule, lenBefore, lenAfter) -> { });
+        Assert.assertEquals(new String(instrumented, 0, instrumentedLength), expected, word);
+        stemLength = stemmer.stem(token, token.length);
+        Assert.assertEquals(new String(token, 0, stemLength), expected, word);
+      }
+    }
+  }
+
+  /**
+   * The bundled rule file must stem exactly like the built-in rules, through
+   * the same length changes, both for the samples and for words spliced from
+   * them, which reach the rarer branches of the rules.
+   */
+  @Test
+  public void testBundledRules() throws IOException {
+    SkroutzGreekRuleStemmer rules = SkroutzGreekRuleStemmer.bundled();
+    assertSameStems(rules, rules.ruleNames());
+  }
+
+  private void assertSameStems(SkroutzGreekStemmer other, List<String> ruleNames) throws IOException {
+    List<String> lines = WordlistLoader.getLines(
+        getClass().getResourceAsStream("/stemming_samples.txt"),
+        StandardCharsets.UTF_8);
+    String[] samples = new String[lines.size()];
+    for (int i = 0; i < samples.length; i++)
+      samples[i] = lines.get(i).split(",")[0];
+
+    for (String sample : samples)
+      assertSameStem(other, ruleNames, sample);
+    Random random = new Random(0);
+    for (int i = 0; i < 200000; i++) {
+      String head = samples[random.nextInt(samples.length)];
+      String tail = samples[random.nextInt(samples.length)];
+      assertSameStem(other, ruleNames, head.substring(0, random.nextInt(head.length() + 1))
+          + tail.substring(random.nextInt(tail.length() + 1)));
+    }
+  }
+
+  private void assertSameStem(SkroutzGreekStemmer other, List<String> ruleNames, String word) {
+    char[] expected = word.toCharArray();
+    char[] actual = word.toCharArray();
+    StringBuilder expectedSteps = new StringBuilder();
+    StringBuilder actualSteps = new StringBuilder();
+    int expectedLength = stemmer.stem(expected, expected.length, (rule, lenBefore, lenAfter) -> {
+      if (lenBefore != lenAfter)
+        expectedSteps.append(stemmer.ruleName(rule)).append(' ');
+    });
+    int actualLength = other.stem(actual, actual.length, (rule, lenBefore, lenAfter) -> {
+      if (lenBefore != lenAfter)
+        actualSteps.append(ruleNames.get(rule)).append(' ');
+    });
+
+    Assert.assertEquals(new String(actual, 0, actualLength), new String(expected, 0, expectedLength), word);
+    Assert.assertEquals(actualSteps.toString(), expectedSteps.toString(), word);
+
+    actual = word.toCharArray();
+    Assert.assertEquals(other.stem(actual, actual.length), expectedLength, word);
+  }
+
+  /**
+   * Every stemmer must give the stems of {@link ReferenceSkroutzGreekStemmer}
+   * on generated words, see {@link StemmerFuzzer}. The seed is fixed so that
+   * every build fuzzes the same words; another one can be given with
+   * {@code -Dstemmer.fuzz.seed}, and the number of words can be raised with
+   * {@code -Dstemmer.fuzz.words}. {@link StemmerFuzzer#main} picks a new seed
+   * on every run.
+   */
+  @Test
+  public void testDifferentialFuzzing() throws IOException, InterruptedException {
+    long seed = Long.getLong("stemmer.fuzz.seed", FUZZ_SEED);
+    long words = Long.getLong("stemmer.fuzz.words", 500000);
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    StemmerFuzzer fuzzer = StemmerFuzzer.create();
+    for (Map.Entry<String, SkroutzGreekStemmer> candidate : StemmerFuzzer.candidates().entrySet()) {
+      StemmerFuzzer.Result result = fuzzer.run(candidate.getValue(), seed, words, threads);
+      Assert.assertTrue(result.divergences.isEmpty(), candidate.getKey() + ": " + result);
+    }
+  }
+
+  @Test
+  public void testInvalidRules() {
+    try {
+      SkroutzGreekRuleStemmer.compile(new StringReader("min-length 3\nrule r1\n  if suffix %nope: cut 1\n"));
+      Assert.fail("expected an invalid rule");
+    } catch (IllegalArgumentException | IOException e) {
+      Assert.assertTrue(e.getMessage().startsWith("Invalid stem rule at line 3"), e.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,49 @@
+package org.elasticsearch.index.analysis;
+
+import org.elasticsearch.test.ESTestCase;
+
+public class StemCacheTest extends ESTestCase {
+	public void testGetAndPut() {
+		StemCache cache = new StemCache(64);
+		char[] word = "μηχανεσ".toCharArray();
+		assertNull(cache.get(word, word.length));
+
+		char[] stem = "μηχαν".toCharArray();
+		cache.put(word, word.length, stem, stem.length);
+		assertEquals("μηχαν", new String(cache.get(word, word.length)));
+
+		// only the given length of the term buffer is the key
+		char[] buffer = "μηχανεσxyz".toCharArray();
+		assertEquals("μηχαν", new String(cache.get(buffer, word.length)));
+		assertNull(cache.get(buffer, buffer.length));
+
+		assertEquals(1, cache.count());
+		assertEquals(2, cache.hits());
+		assertEquals(2, cache.misses());
+		assertEquals(0, cache.evictions());
+	}
+
+	public void testEvictsWhenFull() {
+		StemCache cache = new StemCache(16);
+		assertEquals(16, cache.capacity());
+		int words = randomIntBetween(200, 1000);
+		for (int i = 0; i < words; i++) {
+			char[] word = ("λεξη" + i).toCharArray();
+			cache.put(word, word.length, word, 4);
+		}
+		assertTrue(cache.count() <= cache.capacity());
+		assertEquals(words - cache.count(), cache.evictions());
+
+		// whatever is still cached maps to the right stem
+		for (int i = 0; i < words; i++) {
+			char[] word = ("λεξη" + i).toCharArray();
+			char[] stem = cache.get(word, word.length);
+			if (stem != null)
+				assertEquals("λεξη", new String(stem));
+		}
+	}
+
+	public void testInvalidSize() {
+		expectThrows(IllegalArgumentException.class, () -> new StemCache(0));
+	}
+}
@@ -0,0 +1,366 @@
+package org.elasticsearch.index.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.apache.lucene.analysis.WordlistLoader;
+
+import static org.elasticsearch.index.analysis.SkroutzGreekRuleStemmer.CASE_SIZE;
+import static org.elasticsearch.index.analysis.SkroutzGreekRuleStemmer.MAX_LENGTH;
+import static org.elasticsearch.index.analysis.SkroutzGreekRuleStemmer.MIN_LENGTH;
+
+/**
+ * Differential fuzzing of a stemmer against {@link ReferenceSkroutzGreekStemmer}.
+ * <p>
+ * Words are generated in parallel, from a seed, in five ways: random letters;
+ * words of stemming_samples.txt with a few letters inserted, deleted or
+ * replaced; splices of two sample words; words built from the prefixes,
+ * exception words and suffixes of the bundled rule file; and such words cut
+ * or padded to one letter around every length bound of the rules. Every word
+ * whose stem differs is shrunk to the shortest word that still differs, which
+ * is the one reported.
+ */
+public class StemmerFuzzer {
+  static final String SAMPLES = "/stemming_samples.txt";
+
+  /** casefolded Greek letters without diacritics, final sigma folded to sigma */
+  private static final char[] LETTERS = "αβγδεζηθικλμνξοπρστυφχψω".toCharArray();
+  /** the longest random word */
+  private static final int MAX_RANDOM_LENGTH = 20;
+  /** the most divergences kept, the run stops after them */
+  private static final int MAX_DIVERGENCES = 20;
+  /** the words are generated in this many chunks, each from its own seed */
+  private static final int CHUNKS = 256;
+
+  private final String[] samples;
+  private final String[] prefixes;
+  private final String[] words;
+  private final String[] suffixes;
+  /** the lengths around which a rule applies or not */
+  private final int[] bounds;
+
+  StemmerFuzzer(List<String> samples, SkroutzGreekRuleStemmer.Parser rules) {
+    this.samples = samples.toArray(new String[0]);
+    this.prefixes = flatten(rules.prefixLists);
+    this.words = flatten(rules.wordLists);
+    this.suffixes = flatten(rules.suffixLists);
+
+    final TreeSet<Integer> bounds = new TreeSet<>();
+    bounds.add(rules.minLength);
+    for (int c = 0; c < rules.cases.size(); c += CASE_SIZE) {
+      bounds.add(rules.cases.get(c + MIN_LENGTH));
+      if (rules.cases.get(c + MAX_LENGTH) < Integer.MAX_VALUE)
+        bounds.add(rules.cases.get(c + MAX_LENGTH) + 1);
+    }
+    bounds.remove(0);
+    this.bounds = bounds.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * A fuzzer with the words of stemming_samples.txt and the lists of the
+   * bundled rule file.
+   */
+  static StemmerFuzzer create() throws IOException {
+    final List<String> samples = new ArrayList<>();
+    try (InputStream in = StemmerFuzzer.class.getResourceAsStream(SAMPLES)) {
+      if (in == null)
+        throw new IOException("missing " + SAMPLES);
+      for (String line : WordlistLoader.getLines(in, StandardCharsets.UTF_8))
+        samples.add(line.substring(0, line.indexOf(',')));
+    }
+    try (InputStream in = SkroutzGreekRuleStemmer.class.getResourceAsStream(SkroutzGreekRuleStemmer.BUNDLED_RULES);
+         Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+      return new StemmerFuzzer(samples, SkroutzGreekRuleStemmer.parse(reader));
+    }
+  }
+
+  /**
+   * A word whose stem differs between the reference and the candidate.
+   */
+  static final class Divergence {
+    /** the shortest word found that differs */
+    final String word;
+    /** the generated word it was shrunk from */
+    final String found;
+    final String expected;
+    final String actual;
+
+    Divergence(String word, String found, String expected, String actual) {
+      this.word = word;
+      this.found = found;
+      this.expected = expected;
+      this.actual = actual;
+    }
+
+    @Override
+    public String toString() {
+      return word + ": " + expected + " -> " + actual + " (shrunk from " + found + ")";
+    }
+  }
+
+  /**
+   * The words tried and the divergences found, the shortest first.
+   */
+  static final class Result {
+    final long seed;
+    final long words;
+    final List<Divergence> divergences;
+
+    Result(long seed, long words, List<Divergence> divergences) {
+      this.seed = seed;
+      this.words = words;
+      this.divergences = divergences;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder report = new StringBuilder();
+      report.append(words).append(" words, seed ").append(seed).append(", ")
+          .append(divergences.size()).append(" divergences");
+      for (Divergence divergence : divergences)
+        report.append("\n  ").append(divergence);
+      return report.toString();
+    }
+  }
+
+  /**
+   * Stems {@code count} generated words with the reference and with
+   * {@code candidate}, on {@code threads} threads. The same seed generates
+   * the same words, whatever the number of threads.
+   */
+  Result run(SkroutzGreekStemmer candidate, long seed, long count, int threads)
+      throws InterruptedException
+  {
+    final ReferenceSkroutzGreekStemmer reference = new ReferenceSkroutzGreekStemmer();
+    final Map<String, Divergence> divergences = new ConcurrentHashMap<>();
+    final AtomicLong tried = new AtomicLong();
+
+    final ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int chunk = 0; chunk < CHUNKS; chunk++) {
+        final long from = count * chunk / CHUNKS, to = count * (chunk + 1) / CHUNKS;
+        final Random random = new Random(seed * 31 + chunk);
+        futures.add(executor.submit(() -> {
+          for (long i = from; i < to && divergences.size() < MAX_DIVERGENCES; i++) {
+            final String word = word(random);
+            tried.incrementAndGet();
+            if (!stem(reference, word).equals(stem(candidate, word))) {
+              final String shrunk = shrink(reference, candidate, word);
+              divergences.putIfAbsent(shrunk, new Divergence(shrunk, word,
+                  stem(reference, shrunk), stem(candidate, shrunk)));
+            }
+          }
+        }));
+      }
+      for (Future<?> future : futures)
+        future.get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("fuzzing failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return new Result(seed, tried.get(), divergences.values().stream()
+        .sorted(Comparator.comparingInt((Divergence d) -> d.word.length()).thenComparing(d -> d.word))
+        .limit(MAX_DIVERGENCES)
+        .collect(Collectors.toList()));
+  }
+
+  /**
+   * Generates a word, in one of the five ways.
+   */
+  String word(Random random) {
+    switch (random.nextInt(5)) {
+      case 0:
+        return letters(random, 1 + random.nextInt(MAX_RANDOM_LENGTH));
+      case 1:
+        return mutate(random, pick(random, samples));
+      case 2: {
+        final String head = pick(random, samples), tail = pick(random, samples);
+        return head.substring(0, random.nextInt(head.length() + 1))
+            + tail.substring(random.nextInt(tail.length()));
+      }
+      case 3:
+        return fragments(random);
+      default:
+        return resize(random, random.nextBoolean() ? fragments(random) : pick(random, samples),
+            pick(random, bounds) - 1 + random.nextInt(3));
+    }
+  }
+
+  /**
+   * A word made of an optional prefix, a stem and a suffix of the rules, the
+   * stem being an exception word, a sample or random letters.
+   */
+  private String fragments(Random random) {
+    final StringBuilder word = new StringBuilder();
+    if (random.nextInt(4) == 0)
+      word.append(pick(random, prefixes));
+    switch (random.nextInt(3)) {
+      case 0: word.append(pick(random, words)); break;
+      case 1: word.append(pick(random, samples)); break;
+      default: word.append(letters(random, random.nextInt(6)));
+    }
+    if (random.nextInt(4) != 0)
+      word.append(pick(random, suffixes));
+    return word.toString();
+  }
+
+  /**
+   * Brings {@code word} to {@code length} letters, by dropping or adding
+   * letters at its start so that its ending stays the same.
+   */
+  private static String resize(Random random, String word, int length) {
+    if (length <= 0)
+      return word;
+    if (word.length() >= length)
+      return word.substring(word.length() - length);
+    return letters(random, length - word.length()) + word;
+  }
+
+  private static String mutate(Random random, String word) {
+    final StringBuilder mutated = new StringBuilder(word);
+    for (int n = 1 + random.nextInt(3); n > 0; n--) {
+      final int at = random.nextInt(mutated.length() + 1);
+      final char letter = LETTERS[random.nextInt(LETTERS.length)];
+      switch (random.nextInt(3)) {
+        case 0:
+          mutated.insert(at, letter);
+          break;
+        case 1:
+          if (at < mutated.length())
+            mutated.deleteCharAt(at);
+          break;
+        default:
+          if (at < mutated.length())
+            mutated.setCharAt(at, letter);
+      }
+    }
+    return mutated.toString();
+  }
+
+  private static String letters(Random random, int length) {
+    final char[] letters = new char[length];
+    for (int i = 0; i < length; i++)
+      letters[i] = LETTERS[random.nextInt(LETTERS.length)];
+    return new String(letters);
+  }
+
+  /**
+   * Drops letters from {@code word}, then replaces each of the remaining ones
+   * by the first letter of the alphabet that keeps it, for as long as the
+   * stems still differ.
+   */
+  static String shrink(ReferenceSkroutzGreekStemmer reference, SkroutzGreekStemmer candidate, String word) {
+    boolean shrunk = true;
+    while (shrunk) {
+      shrunk = false;
+      for (int i = 0; i < word.length(); i++) {
+        final String shorter = word.substring(0, i) + word.substring(i + 1);
+        if (!stem(reference, shorter).equals(stem(candidate, shorter))) {
+          word = shorter;
+          shrunk = true;
+          i--;
+        }
+      }
+    }
+    final char[] letters = word.toCharArray();
+    for (int i = 0; i < letters.length; i++) {
+      final char letter = letters[i];
+      for (char smaller : LETTERS) {
+        if (smaller >= letter)
+          break;
+        letters[i] = smaller;
+        final String simpler = new String(letters);
+        if (!stem(reference, simpler).equals(stem(candidate, simpler)))
+          break;
+        letters[i] = letter;
+      }
+    }
+    return new String(letters);
+  }
+
+  static String stem(ReferenceSkroutzGreekStemmer stemmer, String word) {
+    final char[] s = word.toCharArray();
+    return new String(s, 0, stemmer.stem(s, s.length));
+  }
+
+  /**
+   * The stem of {@code word}, in a buffer of exactly its length so that a
+   * write past the end of the word fails; a failure is reported as the stem.
+   */
+  static String stem(SkroutzGreekStemmer stemmer, String word) {
+    final char[] s = word.toCharArray();
+    try {
+      return new String(s, 0, stemmer.stem(s, s.length));
+    } catch (RuntimeException e) {
+      return e.toString();
+    }
+  }
+
+  private static String pick(Random random, String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private static int pick(Random random, int[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private static String[] flatten(List<List<String>> lists) {
+    return lists.stream().flatMap(List::stream).distinct().toArray(String[]::new);
+  }
+
+  /**
+   * The stemmers that can be fuzzed, by name.
+   */
+  static Map<String, SkroutzGreekStemmer> candidates() throws IOException {
+    final Map<String, SkroutzGreekStemmer> candidates = new LinkedHashMap<>();
+    candidates.put("builtin", SkroutzGreekStemmer.INSTANCE);
+    candidates.put("rules", SkroutzGreekRuleStemmer.bundled());
+    return candidates;
+  }
+
+  /**
+   * Usage: {@code StemmerFuzzer [words] [seed] [candidate]}; fuzzes all the
+   * candidates by default, 10 million words each.
+   */
+  public static void main(String args[])
+      throws IOException, InterruptedException
+  {
+    final long count = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000;
+    final long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+    final int threads = Runtime.getRuntime().availableProcessors();
+
+    final StemmerFuzzer fuzzer = create();
+    boolean diverged = false;
+    for (Map.Entry<String, SkroutzGreekStemmer> candidate : candidates().entrySet()) {
+      if (args.length > 2 && !args[2].equals(candidate.getKey()))
+        continue;
+      final long start = System.nanoTime();
+      final Result result = fuzzer.run(candidate.getValue(), seed, count, threads);
+      System.out.println(candidate.getKey() + ": " + result + " in "
+          + (System.nanoTime() - start) / 1_000_000 + " ms");
+      diverged |= !result.divergences.isEmpty();
+    }
+    if (diverged)
+      System.exit(1);
+  }
+}
@@ -1,43 +1,112 @@
 package org.elasticsearch.index.analysis;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import org.apache.lucene.analysis.WordlistLoader;
-
+/**
+ * Checks stemming_samples.txt against the current stemmer, in parallel, and
+ * reports the samples whose stem changed, grouped by the rules that produce
+ * the new stem.
+ * <p>
+ * The file is only rewritten with the new stems when asked to, with the
+ * {@code --write} argument or {@code -Dstemming.samples.write=true}.
+ */
 public class UpdateStemmingSamples {
-  private final static SkroutzGreekStemmer stemmer = new SkroutzGreekStemmer();
+  static final Path SAMPLES = Paths.get("src/test/resources/stemming_samples.txt");
+
+  private static final SkroutzGreekStemmer stemmer = SkroutzGreekStemmer.INSTANCE;
+
+  /**
+   * A sample whose stem is not the recorded one anymore.
+   */
+  static final class Change {
+    final int line;
+    final String oldStem;
+    final StemTrace trace;
+
+    Change(int line, String oldStem, StemTrace trace) {
+      this.line = line;
+      this.oldStem = oldStem;
+      this.trace = trace;
+    }
+
+    /** the rules that produce the new stem, in the order they ran */
+    String rules() {
+      if (trace.steps().isEmpty())
+        return "(no rule)";
+      return trace.steps().stream().map(StemTrace.Step::rule).collect(Collectors.joining(" > "));
+    }
+
+    @Override
+    public String toString() {
+      return trace.word() + ": " + oldStem + " -> " + trace.stem();
+    }
+  }
+
+  /**
+   * Stems the {@code word,stem} samples in parallel and returns the ones
+   * whose stem changed, in file order.
+   */
+  static List<Change> diff(List<String> lines) {
+    return IntStream.range(0, lines.size()).parallel()
+        .mapToObj(i -> {
+          String[] sample = lines.get(i).split(",");
+          StemTrace trace = StemTrace.trace(stemmer, sample[0], false);
+          return trace.stem().equals(sample[1]) ? null : new Change(i, sample[1], trace);
+        })
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Prints the changes grouped by rules, the most frequent group first.
+   */
+  static void report(List<Change> changes, int samples, PrintStream out) {
+    out.println(samples + " samples, " + changes.size() + " changed");
+
+    Map<String, List<Change>> groups = changes.stream()
+        .collect(Collectors.groupingBy(Change::rules, TreeMap::new, Collectors.toList()));
+    List<Map.Entry<String, List<Change>>> entries = new ArrayList<>(groups.entrySet());
+    entries.sort(Comparator.comparingInt(e -> -e.getValue().size()));
+    for (Map.Entry<String, List<Change>> group : entries) {
+      out.println(group.getKey() + " (" + group.getValue().size() + "):");
+      for (Change change : group.getValue())
+        out.println("  " + change);
+    }
+  }
 
   public static void main(String args[])
-      throws java.io.IOException
+      throws IOException
   {
-    List<String> lines = WordlistLoader.getLines(
-        new FileInputStream("src/test/resources/stemming_samples.txt"),
-        StandardCharsets.UTF_8);
-
-    char[] token;
-    int tokenLength, stemLength;
-    String stem;
-    File file = new File("src/test/resources/stemming_samples.txt");
-    FileWriter fileWriter = new FileWriter(file.getAbsoluteFile());
-    BufferedWriter writer = new BufferedWriter(fileWriter);
-
-    try {
-      for(String line : lines) {
-        String[] sample =  line.split(",");
-        token = sample[0].toCharArray();
-        tokenLength = sample[0].length();
-        stemLength = stemmer.stem(token, tokenLength);
-        stem = new String(token, 0, stemLength);
-        writer.write(sample[0] + "," + stem);
-        writer.newLine();
+    boolean write = Arrays.asList(args).contains("--write")
+        || Boolean.getBoolean("stemming.samples.write");
+
+    List<String> lines = Files.readAllLines(SAMPLES, StandardCharsets.UTF_8);
+    List<Change> changes = diff(lines);
+    report(changes, lines.size(), System.out);
+
+    if (!changes.isEmpty()) {
+      if (write) {
+        for (Change change : changes)
+          lines.set(change.line, change.trace.word() + "," + change.trace.stem());
+        Files.write(SAMPLES, lines, StandardCharsets.UTF_8);
+        System.out.println("updated " + SAMPLES);
+      } else {
+        System.out.println("run with --write to update " + SAMPLES);
       }
-    } finally {
-      writer.close();
     }
   }
 }
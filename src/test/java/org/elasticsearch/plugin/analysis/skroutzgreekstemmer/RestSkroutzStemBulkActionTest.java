@@ -0,0 +1,106 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.client.node.NodeClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.analysis.SkroutzGreekStemmer;
+import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.rest.FakeRestChannel;
+import org.elasticsearch.test.rest.FakeRestRequest;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+public class RestSkroutzStemBulkActionTest extends ESTestCase {
+	private ThreadPool threadPool;
+	private NodeClient client;
+
+	@Before
+	public void createThreadPool() {
+		threadPool = new TestThreadPool(getTestName(), new FixedExecutorBuilder(Settings.EMPTY,
+				SkroutzGreekStemmerPlugin.STEM_THREAD_POOL, 4, 1000, "thread_pool." + SkroutzGreekStemmerPlugin.STEM_THREAD_POOL));
+		client = new NodeClient(Settings.EMPTY, threadPool);
+	}
+
+	@After
+	public void shutdownThreadPool() {
+		ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+	}
+
+	private RestResponse bulk(Settings settings, BytesReference body) throws Exception {
+		FakeRestRequest request = new FakeRestRequest.Builder(xContentRegistry())
+				.withMethod(POST)
+				.withPath("/_skroutz_stem/_bulk")
+				.withContent(body, XContentType.JSON)
+				.build();
+		FakeRestChannel channel = new FakeRestChannel(request, true, 1);
+		new RestSkroutzStemBulkAction(settings).handleRequest(request, channel, client);
+		assertBusy(() -> assertNotNull(channel.capturedResponse()));
+		return channel.capturedResponse();
+	}
+
+	private static BytesReference words(List<String> words) throws Exception {
+		XContentBuilder builder = XContentFactory.jsonBuilder();
+		builder.startObject().field("words", words).endObject();
+		return BytesReference.bytes(builder);
+	}
+
+	/**
+	 * The stems of several batches, which finish in any order, come out in
+	 * the order of the words.
+	 */
+	public void testStemsInOrderAcrossBatches() throws Exception {
+		List<String> words = new ArrayList<>();
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 3 * RestSkroutzStemBulkAction.MIN_BATCH_SIZE + 17; i++) {
+			String word = i + randomFrom("μηχανεσ", "κουρευτικεσ", "ρολογια", "usb");
+			char[] token = word.toCharArray();
+			words.add(word);
+			expected.add(new String(token, 0, SkroutzGreekStemmer.INSTANCE.stem(token, token.length)));
+		}
+
+		RestResponse response = bulk(Settings.EMPTY, words(words));
+		assertEquals(RestStatus.OK, response.status());
+		Map<String, Object> body = XContentHelper.convertToMap(response.content(), false, XContentType.JSON).v2();
+		assertEquals("built_in", body.get("stemmer"));
+		assertEquals(expected, body.get("stems"));
+	}
+
+	public void testMaxWords() throws Exception {
+		Settings settings = Settings.builder().put(RestSkroutzStemBulkAction.MAX_WORDS_SETTING.getKey(), 2).build();
+		List<String> words = new ArrayList<>(Collections.nCopies(2, "μηχανεσ"));
+		assertEquals(RestStatus.OK, bulk(settings, words(words)).status());
+
+		words.add("μηχανεσ");
+		RestResponse response = bulk(settings, words(words));
+		assertEquals(RestStatus.BAD_REQUEST, response.status());
+		assertTrue(response.content().utf8ToString().contains("skroutz_stemmer.bulk.max_words"));
+	}
+
+	public void testWordsMustBeAnArray() throws Exception {
+		RestResponse response = bulk(Settings.EMPTY, new BytesArray("{\"words\": \"μηχανεσ\"}"));
+		assertEquals(RestStatus.BAD_REQUEST, response.status());
+		assertTrue(response.content().utf8ToString().contains("[words] must be an array of strings"));
+
+		response = bulk(Settings.EMPTY, new BytesArray("{\"words\": [\"μηχανεσ\", 1]}"));
+		assertEquals(RestStatus.BAD_REQUEST, response.status());
+		assertTrue(response.content().utf8ToString().contains("[words] must be an array of strings"));
+	}
+}
@@ -0,0 +1,68 @@
+package org.elasticsearch.plugin.analysis.skroutzgreekstemmer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.elasticsearch.ElasticsearchParseException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.ingest.IngestDocument;
+import org.elasticsearch.test.ESTestCase;
+
+public class SkroutzGreekStemProcessorTest extends ESTestCase {
+	private final SkroutzGreekStemProcessor.Factory factory =
+			new SkroutzGreekStemProcessor.Factory(new SkroutzGreekStemmerService(Settings.EMPTY));
+
+	private SkroutzGreekStemProcessor processor(Object... config) {
+		Map<String, Object> map = new HashMap<>();
+		for (int i = 0; i < config.length; i += 2)
+			map.put((String) config[i], config[i + 1]);
+		return factory.create(Collections.emptyMap(), randomAlphaOfLength(8), map);
+	}
+
+	private static IngestDocument document(String field, Object value) {
+		Map<String, Object> source = new HashMap<>();
+		source.put(field, value);
+		return new IngestDocument(source, new HashMap<>());
+	}
+
+	public void testFactory() {
+		SkroutzGreekStemProcessor processor = processor("field", "title");
+		assertEquals("title", processor.getField());
+		assertEquals("title", processor.getTargetField());
+		assertFalse(processor.isIgnoreMissing());
+
+		processor = processor("field", "title", "target_field", "title_stems", "ignore_missing", true);
+		assertEquals("title_stems", processor.getTargetField());
+		assertTrue(processor.isIgnoreMissing());
+
+		expectThrows(ElasticsearchParseException.class, () -> processor("target_field", "title_stems"));
+	}
+
+	public void testStemString() throws Exception {
+		IngestDocument document = document("title", "Κουρευτικές ΜΗΧΑΝΈΣ, iPhone 4K");
+		processor("field", "title", "target_field", "stems").execute(document);
+		assertEquals(Arrays.asList("κουρευτ", "μηχαν", "iphone", "4k"), document.getFieldValue("stems", Object.class));
+		assertEquals("Κουρευτικές ΜΗΧΑΝΈΣ, iPhone 4K", document.getFieldValue("title", String.class));
+	}
+
+	public void testStemList() throws Exception {
+		IngestDocument document = document("tags", Arrays.asList("κουρευτικές μηχανές", null, "ρολόγια"));
+		processor("field", "tags").execute(document);
+		assertEquals(Arrays.asList("κουρευτ", "μηχαν", "ρολογ"), document.getFieldValue("tags", Object.class));
+	}
+
+	public void testMissingField() throws Exception {
+		IngestDocument document = document("title", "μηχανές");
+		expectThrows(IllegalArgumentException.class, () -> processor("field", "missing").execute(document));
+
+		processor("field", "missing", "target_field", "stems", "ignore_missing", true).execute(document);
+		assertFalse(document.hasField("stems"));
+	}
+
+	public void testNonStringField() {
+		IngestDocument document = document("price", 42);
+		expectThrows(IllegalArgumentException.class, () -> processor("field", "price").execute(document));
+	}
+}
@@ -0,0 +1,204 @@
+package org.elasticsearch.tools.analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.elasticsearch.index.analysis.SkroutzGreekStemmer;
+
+/**
+ * Stems large word lists offline, such as corpus dumps for synonym lists or
+ * for checking the effect of rule changes, on all cores.
+ * <p>
+ * The input is UTF-8, one word per line; anything after a comma is ignored,
+ * so a {@code word,stem} file can be re-stemmed as is. The output is a
+ * {@code word,stem} line per input word, in input order.
+ * <p>
+ * The input is memory-mapped and cut into chunks at line boundaries. Every
+ * chunk is decoded straight into a char buffer and stemmed by a task of a
+ * {@link ForkJoinPool}, with one set of buffers per worker thread and the
+ * shared stemmer. Finished chunks are written out in order while later ones are
+ * still being stemmed.
+ */
+public final class SkroutzGreekBatchStemmer {
+	/** input bytes per task, extended to the end of the line */
+	static final int CHUNK_SIZE = 4 << 20;
+
+	private static final ThreadLocal<Worker> WORKERS = ThreadLocal.withInitial(Worker::new);
+
+	private SkroutzGreekBatchStemmer() { }
+
+	/**
+	 * Stems every word of {@code input} on {@code pool} and writes the
+	 * {@code word,stem} lines to {@code output}, in input order.
+	 */
+	public static void stem(Path input, WritableByteChannel output, ForkJoinPool pool) throws IOException {
+		stem(input, output, pool, CHUNK_SIZE);
+	}
+
+	static void stem(Path input, WritableByteChannel output, ForkJoinPool pool, int chunkSize)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			// bounds the stemmed chunks that wait to be written
+			final int window = 2 * pool.getParallelism();
+			final ArrayDeque<ForkJoinTask<ByteBuffer>> pending = new ArrayDeque<>();
+
+			long start = 0;
+			while (start < size) {
+				final long chunkStart = start;
+				final long chunkEnd = lineEnd(channel, Math.min(size, start + chunkSize), size);
+				pending.add(pool.submit(() -> WORKERS.get().stem(
+						channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, chunkEnd - chunkStart))));
+				start = chunkEnd;
+
+				if (pending.size() >= window)
+					write(pending.poll(), output);
+			}
+			while (!pending.isEmpty())
+				write(pending.poll(), output);
+		}
+	}
+
+	/**
+	 * Returns the position just past the first line end at or after
+	 * {@code position - 1}, or {@code size}.
+	 */
+	private static long lineEnd(FileChannel channel, long position, long size) throws IOException {
+		if (position >= size)
+			return size;
+
+		final ByteBuffer buffer = ByteBuffer.allocate(8192);
+		for (long offset = position - 1; offset < size; offset += buffer.limit()) {
+			buffer.clear();
+			channel.read(buffer, offset);
+			buffer.flip();
+			for (int i = 0; i < buffer.limit(); i++)
+				if (buffer.get(i) == '\n')
+					return offset + i + 1;
+		}
+		return size;
+	}
+
+	private static void write(ForkJoinTask<ByteBuffer> task, WritableByteChannel output) throws IOException {
+		final ByteBuffer bytes;
+		try {
+			bytes = task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while stemming", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			if (e.getCause() instanceof UncheckedIOException)
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			throw new IOException("failed to stem", e.getCause());
+		}
+		while (bytes.hasRemaining())
+			output.write(bytes);
+	}
+
+	/**
+	 * The buffers of a single worker thread.
+	 */
+	private static final class Worker {
+		private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+		private char[] token = new char[64];
+		private char[] out = new char[CHUNK_SIZE];
+		private int outLength;
+
+		ByteBuffer stem(MappedByteBuffer bytes) throws CharacterCodingException {
+			// UTF-8 never decodes to more chars than it has bytes
+			if (chars.capacity() < bytes.remaining())
+				chars = CharBuffer.allocate(bytes.remaining());
+			chars.clear();
+			decoder.reset();
+			decoder.decode(bytes, chars, true);
+			decoder.flush(chars);
+			chars.flip();
+
+			final char[] buffer = chars.array();
+			final int length = chars.limit();
+			outLength = 0;
+			for (int start = 0; start < length;) {
+				int end = start;
+				while (end < length && buffer[end] != '\n')
+					end++;
+				stemLine(buffer, start, end);
+				start = end + 1;
+			}
+			return encoder.encode(CharBuffer.wrap(out, 0, outLength));
+		}
+
+		private void stemLine(char[] line, int start, int end) {
+			int wordEnd = start;
+			while (wordEnd < end && line[wordEnd] != ',' && line[wordEnd] != '\r')
+				wordEnd++;
+			final int length = wordEnd - start;
+			if (length == 0)
+				return;
+
+			if (token.length < length)
+				token = new char[ArrayUtil.oversize(length, Character.BYTES)];
+			System.arraycopy(line, start, token, 0, length);
+			final int stemLength = SkroutzGreekStemmer.INSTANCE.stem(token, length);
+
+			if (out.length < outLength + length + stemLength + 2)
+				out = ArrayUtil.grow(out, outLength + length + stemLength + 2);
+			System.arraycopy(line, start, out, outLength, length);
+			outLength += length;
+			out[outLength++] = ',';
+			System.arraycopy(token, 0, out, outLength, stemLength);
+			outLength += stemLength;
+			out[outLength++] = '\n';
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2 || args.length > 3) {
+			System.err.println("Usage: SkroutzGreekBatchStemmer <words file> <output file|-> [threads]");
+			System.exit(1);
+		}
+
+		final int threads = args.length == 3 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			if ("-".equals(args[1])) {
+				final WritableByteChannel output = Channels.newChannel(System.out);
+				stem(Paths.get(args[0]), output, pool);
+				System.out.flush();
+			} else {
+				try (FileChannel output = FileChannel.open(Paths.get(args[1]), StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+					stem(Paths.get(args[0]), output, pool);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package org.elasticsearch.tools.analysis;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.elasticsearch.index.analysis.SkroutzGreekFolding;
+import org.elasticsearch.index.analysis.SkroutzGreekStemmer;
+import org.elasticsearch.index.mapper.Uid;
+
+/**
+ * Finds the terms and documents of an existing index that a stemmer upgrade
+ * affects, so that only those documents need to be reindexed.
+ * <p>
+ * The index is opened read-only and the stems of the current
+ * {@link SkroutzGreekStemmer} are compared with what the stemmed field holds,
+ * in one of two ways:
+ * <ul>
+ * <li>with a vocabulary of {@code word,stem} lines recorded by the previous
+ * version, such as the output of its {@link SkroutzGreekBatchStemmer}: every
+ * word whose stem changed makes its old stem, and every live document that
+ * contains it, affected.</li>
+ * <li>with a stored, unstemmed copy of the field: its words are casefolded
+ * and stemmed again, and a live document is affected when one of the new
+ * stems is missing from its stemmed field.</li>
+ * </ul>
+ * Both are an upper bound: a document is also reported when an unchanged word
+ * shares the old stem, and the second way assumes the field was analyzed by
+ * a standard tokenizer followed by {@code skroutz_greek_fold_stem}, without
+ * exceptions or other filters.
+ */
+public final class SkroutzGreekStemImpact {
+
+	private SkroutzGreekStemImpact() { }
+
+	/**
+	 * The affected terms, each with the words that changed it, and the
+	 * affected documents.
+	 */
+	public static final class Report {
+		private final SortedMap<String, Set<String>> terms = new TreeMap<>();
+		private final FixedBitSet docs;
+
+		Report(int maxDoc) {
+			this.docs = new FixedBitSet(maxDoc);
+		}
+
+		private void add(String term, String change, int doc) {
+			terms.computeIfAbsent(term, t -> new TreeSet<>()).add(change);
+			docs.set(doc);
+		}
+
+		/**
+		 * @return the affected terms of the stemmed field, each with the
+		 *         {@code word -> new stem} changes behind it
+		 */
+		public SortedMap<String, Set<String>> terms() {
+			return Collections.unmodifiableSortedMap(terms);
+		}
+
+		/**
+		 * @return the affected documents, by top-level doc id
+		 */
+		public FixedBitSet docs() {
+			return docs;
+		}
+	}
+
+	/**
+	 * Compares the stems of {@code vocabulary}, word to old stem, with the
+	 * current stemmer and collects the documents that contain a changed old
+	 * stem in {@code field}.
+	 */
+	public static Report fromVocabulary(IndexReader reader, String field, Map<String, String> vocabulary)
+			throws IOException {
+		final SkroutzGreekStemmer stemmer = SkroutzGreekStemmer.INSTANCE;
+		final Map<String, Set<String>> changes = new HashMap<>();
+		for (Map.Entry<String, String> entry : vocabulary.entrySet()) {
+			final String stem = stem(stemmer, entry.getKey());
+			if (!stem.equals(entry.getValue()))
+				changes.computeIfAbsent(entry.getValue(), t -> new TreeSet<>())
+						.add(entry.getKey() + " -> " + stem);
+		}
+
+		final Report report = new Report(reader.maxDoc());
+		PostingsEnum postings = null;
+		for (LeafReaderContext leaf : reader.leaves()) {
+			final Terms terms = leaf.reader().terms(field);
+			if (terms == null)
+				continue;
+			final TermsEnum termsEnum = terms.iterator();
+			final Bits liveDocs = leaf.reader().getLiveDocs();
+			for (Map.Entry<String, Set<String>> change : changes.entrySet()) {
+				if (!termsEnum.seekExact(new BytesRef(change.getKey())))
+					continue;
+				postings = termsEnum.postings(postings, PostingsEnum.NONE);
+				for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+					if (liveDocs == null || liveDocs.get(doc)) {
+						for (String word : change.getValue())
+							report.add(change.getKey(), word, leaf.docBase + doc);
+					}
+				}
+			}
+		}
+		return report;
+	}
+
+	/**
+	 * Stems the words of the stored {@code storedField} again and collects the
+	 * documents whose {@code field} lacks any of the new stems.
+	 */
+	public static Report fromStoredField(IndexReader reader, String field, String storedField)
+			throws IOException {
+		final SkroutzGreekStemmer stemmer = SkroutzGreekStemmer.INSTANCE;
+		final Set<String> fields = Collections.singleton(storedField);
+		final Report report = new Report(reader.maxDoc());
+		final Tokenizer tokenizer = new StandardTokenizer();
+		final CharTermAttribute termAtt = tokenizer.addAttribute(CharTermAttribute.class);
+		PostingsEnum postings = null;
+		for (LeafReaderContext leaf : reader.leaves()) {
+			final LeafReader leafReader = leaf.reader();
+			final Terms terms = leafReader.terms(field);
+			final TermsEnum termsEnum = terms == null ? null : terms.iterator();
+			final Bits liveDocs = leafReader.getLiveDocs();
+			for (int doc = 0; doc < leafReader.maxDoc(); doc++) {
+				if (liveDocs != null && !liveDocs.get(doc))
+					continue;
+				for (IndexableField value : leafReader.document(doc, fields).getFields(storedField)) {
+					if (value.stringValue() == null)
+						continue;
+					tokenizer.setReader(new StringReader(value.stringValue()));
+					tokenizer.reset();
+					while (tokenizer.incrementToken()) {
+						SkroutzGreekFolding.fold(termAtt.buffer(), termAtt.length());
+						final String word = termAtt.toString();
+						final String stem = stem(stemmer, word);
+						if (termsEnum == null || !termsEnum.seekExact(new BytesRef(stem))
+								|| (postings = termsEnum.postings(postings, PostingsEnum.NONE)).advance(doc) != doc)
+							report.add(stem, word + " -> " + stem, leaf.docBase + doc);
+					}
+					tokenizer.end();
+					tokenizer.close();
+				}
+			}
+		}
+		return report;
+	}
+
+	private static String stem(SkroutzGreekStemmer stemmer, String word) {
+		final char[] token = word.toCharArray();
+		return new String(token, 0, stemmer.stem(token, token.length));
+	}
+
+	/**
+	 * Prints the report as tab separated {@code term} and {@code doc} lines;
+	 * documents are identified by {@code idField}, if given, or else by their
+	 * Lucene doc id.
+	 */
+	static void print(Report report, IndexReader reader, String idField, PrintStream out) throws IOException {
+		out.println("# affected terms: " + report.terms.size() + ", affected documents: "
+				+ report.docs.cardinality() + " of " + reader.numDocs());
+		for (Map.Entry<String, Set<String>> term : report.terms.entrySet())
+			out.println("term\t" + term.getKey() + "\t" + String.join(", ", term.getValue()));
+
+		final Set<String> fields = idField == null ? null : Collections.singleton(idField);
+		final DocIdSetIterator docs = new BitSetIterator(report.docs, 0);
+		for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc())
+			out.println("doc\t" + (fields == null ? Integer.toString(doc) : id(reader.document(doc, fields), idField)));
+	}
+
+	private static String id(Document document, String idField) {
+		final IndexableField id = document.getField(idField);
+		if (id == null)
+			return "";
+		if ("_id".equals(idField)) {
+			// Elasticsearch stores _id encoded
+			final BytesRef bytes = id.binaryValue();
+			return Uid.decodeId(bytes.bytes, bytes.offset, bytes.length);
+		}
+		return id.stringValue();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4 && args.length != 6
+				|| !"--vocabulary".equals(args[2]) && !"--stored-field".equals(args[2])
+				|| args.length == 6 && !"--id-field".equals(args[4])) {
+			System.err.println("Usage: SkroutzGreekStemImpact <index dir> <stemmed field>"
+					+ " (--vocabulary <word,stem file> | --stored-field <field>) [--id-field <field>]");
+			System.exit(1);
+		}
+
+		try (Directory dir = FSDirectory.open(Paths.get(args[0]));
+			 IndexReader reader = DirectoryReader.open(dir)) {
+			final Report report;
+			if ("--vocabulary".equals(args[2])) {
+				report = fromVocabulary(reader, args[1], readVocabulary(Paths.get(args[3])));
+			} else {
+				report = fromStoredField(reader, args[1], args[3]);
+			}
+			print(report, reader, args.length == 6 ? args[5] : null, System.out);
+		}
+	}
+
+	private static Map<String, String> readVocabulary(Path file) throws IOException {
+		final Map<String, String> vocabulary = new HashMap<>();
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+			final int comma = line.indexOf(',');
+			if (comma > 0)
+				vocabulary.put(line.substring(0, comma).trim(), line.substring(comma + 1).trim());
+		}
+		return vocabulary;
+	}
+}
@@ -0,0 +1,51 @@
+package org.elasticsearch.tools.analysis;
+
+import org.apache.lucene.analysis.WordlistLoader;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class SkroutzGreekBatchStemmerTest extends ESTestCase {
+	public void testStemsInInputOrder() throws IOException {
+		List<String> lines = WordlistLoader.getLines(
+				getClass().getResourceAsStream("/stemming_samples.txt"),
+				StandardCharsets.UTF_8);
+
+		// words only, words with a stem to ignore, CRLF and empty lines
+		StringBuilder input = new StringBuilder();
+		List<String> expected = new ArrayList<>();
+		for (String line : lines) {
+			String word = line.split(",")[0];
+			switch (randomInt(3)) {
+				case 0: input.append(word).append('\n'); break;
+				case 1: input.append(line).append('\n'); break;
+				case 2: input.append(word).append("\r\n"); break;
+				default: input.append(word).append("\n\n"); break;
+			}
+			expected.add(line);
+		}
+
+		Path dir = createTempDir();
+		Path in = dir.resolve("words.txt");
+		Path out = dir.resolve("stems.txt");
+		Files.write(in, input.toString().getBytes(StandardCharsets.UTF_8));
+
+		ForkJoinPool pool = new ForkJoinPool(randomIntBetween(1, 4));
+		try (FileChannel output = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			// small chunks, so that lines and characters straddle chunk boundaries
+			SkroutzGreekBatchStemmer.stem(in, output, pool, randomIntBetween(1, 4096));
+		} finally {
+			pool.shutdown();
+		}
+
+		assertEquals(expected, Files.readAllLines(out, StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,80 @@
+package org.elasticsearch.tools.analysis;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.elasticsearch.index.analysis.SkroutzGreekStemTokenFilter;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SkroutzGreekStemImpactTest extends ESTestCase {
+	public void testAffectedTermsAndDocuments() throws IOException {
+		Analyzer analyzer = new Analyzer() {
+			@Override
+			protected TokenStreamComponents createComponents(String fieldName) {
+				Tokenizer tokenizer = new StandardTokenizer();
+				return new TokenStreamComponents(tokenizer, new SkroutzGreekStemTokenFilter(tokenizer, null, null, null, null, 0,
+						SkroutzGreekStemTokenFilter.FOLD));
+			}
+		};
+
+		try (Directory dir = new ByteBuffersDirectory()) {
+			try (IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(analyzer))) {
+				// stemmed by the current stemmer
+				writer.addDocument(document("Κουρευτικές μηχανές"));
+				// "μηχανεσ" stemmed to "μηχανε" by an older stemmer
+				Tokenizer oldStems = new WhitespaceTokenizer();
+				oldStems.setReader(new StringReader("μηχανε"));
+				Document old = new Document();
+				old.add(new TextField("title", oldStems));
+				old.add(new StoredField("title_raw", "Μηχανές"));
+				writer.addDocument(old);
+				writer.addDocument(document("κουρευτικη"));
+			}
+
+			try (DirectoryReader reader = DirectoryReader.open(dir)) {
+				Map<String, String> vocabulary = new HashMap<>();
+				vocabulary.put("μηχανεσ", "μηχανε");
+				vocabulary.put("κουρευτικεσ", "κουρευτ");
+				SkroutzGreekStemImpact.Report report =
+						SkroutzGreekStemImpact.fromVocabulary(reader, "title", vocabulary);
+				assertEquals(Collections.singletonMap("μηχανε", Collections.singleton("μηχανεσ -> μηχαν")),
+						report.terms());
+				assertDocs(report, 1);
+
+				report = SkroutzGreekStemImpact.fromStoredField(reader, "title", "title_raw");
+				assertEquals(Collections.singletonMap("μηχαν", Collections.singleton("μηχανεσ -> μηχαν")),
+						report.terms());
+				assertDocs(report, 1);
+			}
+		}
+	}
+
+	private static Document document(String title) {
+		Document document = new Document();
+		document.add(new TextField("title", title, Field.Store.NO));
+		document.add(new StoredField("title_raw", title));
+		return document;
+	}
+
+	private static void assertDocs(SkroutzGreekStemImpact.Report report, int... docs) {
+		assertEquals(docs.length, report.docs().cardinality());
+		for (int doc : docs)
+			assertTrue(report.docs().get(doc));
+	}
+}